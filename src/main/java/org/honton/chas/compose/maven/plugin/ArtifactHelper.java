@@ -3,14 +3,16 @@ package org.honton.chas.compose.maven.plugin;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
@@ -24,6 +26,8 @@ import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.honton.chas.compose.maven.plugin.JarReader.JarFacts;
 
 @RequiredArgsConstructor
 class ArtifactHelper {
@@ -54,6 +58,15 @@ class ArtifactHelper {
     return namespace + '/' + path.getFileName();
   }
 
+  static List<Artifact> composeArtifacts(Collection<String> collection) {
+    return collection == null
+        ? List.of()
+        : collection.stream()
+            .flatMap(ArtifactHelper::splitAndTrim)
+            .<Artifact>map(ArtifactHelper::composeArtifact)
+            .toList();
+  }
+
   static void forEach(Collection<String> collection, DependencyConsumer consumer) {
     if (collection != null) {
       SneakyDependencyConsumer sneaky = new SneakyDependencyConsumer(consumer);
@@ -67,27 +80,24 @@ class ArtifactHelper {
         : Stream.of(element.split("[,\\s]+")).map(String::trim).filter(i -> !i.isEmpty());
   }
 
-  private static void processComposeAndOverride(
-      Log log,
-      Path dir,
-      SneakyPathConsumer consumer,
-      String classifier,
-      String namespace,
-      boolean processOverride) {
-    log.debug("processing " + dir);
+  private static Optional<ComposeSource> scanDirectory(
+      Log log, Path dir, String classifier, String namespace) throws IOException {
+    log.debug("scanning " + dir);
     Optional<Path> composeYaml = findComposePath(dir);
-    composeYaml.ifPresent(
-        path -> {
-          consumer.process(classifier, namespace, path);
-          if (processOverride) {
-            Path override =
-                path.resolveSibling(
-                    path.getFileName().toString().replace("compose.", "compose-override."));
-            if (Files.isReadable(override)) {
-              consumer.process(classifier, namespace, override);
-            }
-          }
-        });
+    if (composeYaml.isEmpty()) {
+      return Optional.empty();
+    }
+    Path compose = composeYaml.get();
+    Path override =
+        compose.resolveSibling(
+            compose.getFileName().toString().replace("compose.", "compose-override."));
+    List<Path> files;
+    try (Stream<Path> list = Files.list(dir)) {
+      files = list.filter(Files::isRegularFile).sorted().toList();
+    }
+    return Optional.of(
+        new ComposeSource(
+            classifier, namespace, compose, Files.isReadable(override) ? override : null, files));
   }
 
   /**
@@ -97,31 +107,85 @@ class ArtifactHelper {
    * @return The local file location
    */
   File fetchArtifact(Artifact artifact) throws ArtifactResolutionException, MojoExecutionException {
-    Artifact local =
-        repoSystem
-            .resolveArtifact(
-                repoSession,
-                new ArtifactRequest(artifact, project.getRemoteProjectRepositories(), null))
-            .getArtifact();
-    if (local == null) {
-      throw new MojoExecutionException(artifact + " is not available");
+    return fetchArtifacts(List.of(artifact)).get(0);
+  }
+
+  /**
+   * Fetch a batch of artifacts with a single resolution request; artifacts already resolved in this
+   * session are not requested again
+   *
+   * @param artifacts The artifacts to fetch
+   * @return The local file locations, in the same order as the artifacts
+   */
+  List<File> fetchArtifacts(List<Artifact> artifacts)
+      throws ArtifactResolutionException, MojoExecutionException {
+    return sessionCache().files(artifacts, repositories(), this::resolveArtifacts);
+  }
+
+  /** Identify the remote repositories of the project, as part of the session cache key */
+  private String repositories() {
+    return project.getRemoteProjectRepositories().stream()
+        .map(repository -> repository.getId() + '=' + repository.getUrl())
+        .collect(Collectors.joining(","));
+  }
+
+  private List<File> resolveArtifacts(List<Artifact> artifacts)
+      throws ArtifactResolutionException, MojoExecutionException {
+    List<ArtifactRequest> requests = new ArrayList<>(artifacts.size());
+    for (Artifact artifact : artifacts) {
+      requests.add(new ArtifactRequest(artifact, project.getRemoteProjectRepositories(), null));
+    }
+    List<File> files = new ArrayList<>(artifacts.size());
+    for (ArtifactResult result : repoSystem.resolveArtifacts(repoSession, requests)) {
+      Artifact local = result.getArtifact();
+      if (local == null) {
+        throw new MojoExecutionException(result.getRequest().getArtifact() + " is not available");
+      }
+      files.add(local.getFile());
     }
-    return local.getFile();
+    return files;
   }
 
-  void processComposeSrc(Log log, PathConsumer pathConsumer, boolean processOverride)
-      throws IOException {
-    SneakyPathConsumer consumer = new SneakyPathConsumer(pathConsumer);
+  /**
+   * Read the manifest attributes and index of a jar, once per session
+   *
+   * @param file The compose artifact
+   * @return The facts of the jar
+   */
+  JarFacts readJar(File file) throws IOException {
+    return sessionCache().jar(file);
+  }
 
-    // process src/compose
-    processComposeAndOverride(
-        log, composeSrc, consumer, "compose", project.getArtifactId(), processOverride);
+  private ComposeSessionCache sessionCache() {
+    return ComposeSessionCache.of(repoSession);
+  }
 
-    // process directories src/compose/_classifier_
-    try (DirectoryStream<Path> files = Files.newDirectoryStream(composeSrc, Files::isReadable)) {
-      for (Path dir : files) {
+  /**
+   * Scan the compose source directory once
+   *
+   * @return The compose source of src/compose and of each src/compose/_classifier_ directory, in
+   *     directory name order
+   */
+  List<ComposeSource> scanComposeSrc(Log log) throws IOException {
+    List<ComposeSource> sources = new ArrayList<>();
+    scanDirectory(log, composeSrc, "compose", project.getArtifactId()).ifPresent(sources::add);
+    // sorted, so that the jars are attached in the same order on every file system
+    try (Stream<Path> dirs = Files.list(composeSrc)) {
+      for (Path dir : dirs.filter(Files::isReadable).sorted().toList()) {
         String classifier = dir.getFileName().toString();
-        processComposeAndOverride(log, dir, consumer, classifier, classifier, processOverride);
+        scanDirectory(log, dir, classifier, classifier).ifPresent(sources::add);
+      }
+    }
+    return sources;
+  }
+
+  void processComposeSrc(Log log, PathConsumer pathConsumer, boolean processOverride)
+      throws IOException {
+    SneakyPathConsumer consumer = new SneakyPathConsumer(pathConsumer);
+    for (ComposeSource source : scanComposeSrc(log)) {
+      consumer.process(source.classifier(), source.namespace(), source.compose());
+      if (processOverride && source.override() != null) {
+        consumer.process(source.classifier(), source.namespace(), source.override());
       }
     }
   }
@@ -191,6 +255,18 @@ class ArtifactHelper {
 
   public record Coordinates(String gav, String key, String version, String prior) {}
 
+  /**
+   * A directory of compose configuration
+   *
+   * @param classifier The classifier of the assembled artifact
+   * @param namespace The directory within the assembled artifact
+   * @param compose The compose file
+   * @param override The compose override file, or null
+   * @param files The regular files of the directory, sorted by name
+   */
+  record ComposeSource(
+      String classifier, String namespace, Path compose, Path override, List<Path> files) {}
+
   @RequiredArgsConstructor
   private static class SneakyDependencyConsumer implements Consumer<String> {
 
@@ -0,0 +1,103 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Writes non-compose files into a jar. Files which match the stored patterns, and large files with
+ * a NUL byte in their head, are stored without compression; all other files are deflated.
+ */
+@RequiredArgsConstructor
+class AssetWriter {
+
+  /** number of leading bytes of a large file which are examined for binary content */
+  static final int HEAD_SIZE = 8192;
+
+  /** selects the entries which are stored, or null */
+  private final FilterSelector storedSelector;
+
+  /** size at or above which binary files are stored */
+  private final long storedSize;
+
+  private static boolean isBinary(Path path) throws IOException {
+    byte[] head;
+    try (InputStream is = Files.newInputStream(path)) {
+      head = is.readNBytes(HEAD_SIZE);
+    }
+    for (byte b : head) {
+      if (b == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long crc(FileChannel channel) throws IOException {
+    CRC32 crc = new CRC32();
+    ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    while (channel.read(buffer) >= 0) {
+      buffer.flip();
+      crc.update(buffer);
+      buffer.clear();
+    }
+    return crc.getValue();
+  }
+
+  private static void transfer(FileChannel channel, long size, OutputStream stream)
+      throws IOException {
+    WritableByteChannel target = Channels.newChannel(stream);
+    for (long position = 0; position < size; ) {
+      position += channel.transferTo(position, size - position, target);
+    }
+  }
+
+  /**
+   * Whether the file is stored without compression
+   *
+   * @param name The entry name
+   * @param path The file
+   * @return true, if the name matches the stored patterns, or a large file is binary
+   */
+  boolean isStored(String name, Path path) throws IOException {
+    return storedSelector != null && storedSelector.matches(name)
+        || Files.size(path) >= storedSize && isBinary(path);
+  }
+
+  /**
+   * Write the file as the content of the entry
+   *
+   * @param stream The jar
+   * @param entry The entry, with name and time set
+   * @param path The file
+   */
+  void write(ZipOutputStream stream, JarEntry entry, Path path) throws IOException {
+    if (!isStored(entry.getName(), path)) {
+      stream.putNextEntry(entry);
+      Files.copy(path, stream);
+      stream.closeEntry();
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(path)) {
+      long size = channel.size();
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(size);
+      entry.setCompressedSize(size);
+      entry.setCrc(crc(channel));
+      stream.putNextEntry(entry);
+      transfer(channel, size, stream);
+    }
+    stream.closeEntry();
+  }
+}
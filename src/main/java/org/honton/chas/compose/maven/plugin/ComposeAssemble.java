@@ -1,20 +1,33 @@
 package org.honton.chas.compose.maven.plugin;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.Attributes.Name;
 import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
@@ -27,11 +40,14 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
-import org.eclipse.aether.RepositoryException;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.DefaultArtifact;
+import org.honton.chas.compose.maven.plugin.ArtifactHelper.ComposeSource;
 import org.honton.chas.compose.maven.plugin.ArtifactHelper.Coordinates;
+import org.honton.chas.compose.maven.plugin.JarReader.JarFacts;
+import org.honton.chas.compose.maven.plugin.schema.SchemaValidator;
+import org.honton.chas.compose.maven.plugin.schema.Violation;
 import org.honton.chas.compose.maven.plugin.yaml.ComposeConstructor;
 import org.yaml.snakeyaml.Yaml;
 
@@ -39,6 +55,9 @@ import org.yaml.snakeyaml.Yaml;
 @Mojo(name = "assemble", defaultPhase = LifecyclePhase.COMPILE, threadSafe = true)
 public class ComposeAssemble extends ComposeGoal {
 
+  private static final List<String> COMPRESSED_FORMATS =
+      List.of("**/*.{7z,br,bz2,gz,jar,jpeg,jpg,png,tgz,webp,xz,zip,zst}");
+
   /** Attach compose configuration as a secondary artifact */
   @Parameter(property = "compose.attach", defaultValue = "true")
   boolean attach;
@@ -61,28 +80,77 @@ public class ComposeAssemble extends ComposeGoal {
   @Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
   RepositorySystemSession repoSession;
 
+  /** Number of threads used to write the classifier jars */
+  @Parameter(property = "compose.threads", defaultValue = "4")
+  int threads;
+
+  /**
+   * Timestamp of the jar entries, for reproducible output. Either an ISO-8601 instant or seconds
+   * since the epoch; if unset, each entry has the last modified time of its source file.
+   */
+  @Parameter(defaultValue = "${project.build.outputTimestamp}")
+  String outputTimestamp;
+
+  /**
+   * Glob patterns of the entries which are stored without compression. If unset, common compressed
+   * formats are stored; if empty, only large binaries are stored.
+   */
+  @Parameter List<String> storedIncludes;
+
+  /** Size in bytes at or above which binary entries are stored without compression */
+  @Parameter(property = "compose.storedSize", defaultValue = "1048576")
+  long storedSize;
+
+  /** Deflate level, from 0 to 9, of the compressed entries; -1 for the default level */
+  @Parameter(property = "compose.compressionLevel", defaultValue = "-1")
+  int compressionLevel;
+
+  /**
+   * Validate each compose file against the bundled subset of the compose specification schema.
+   * Properties unknown to the subset are reported as warnings.
+   */
+  @Parameter(property = "compose.validate", defaultValue = "false")
+  boolean validate;
+
   @Component MavenProjectHelper projectHelper;
+  private final ThreadLocal<Yaml> yaml = ThreadLocal.withInitial(ComposeConstructor::createParser);
   private ArtifactHelper artifactHelper;
-  private Yaml yaml;
   private Map<String, ArtifactInfo> coordinatesToInfo;
   private Map<String, String> serviceToCoordinates;
+  private LocalDateTime entryTime;
+  private AssetWriter assetWriter;
 
-  protected final void doExecute() throws IOException {
+  protected final void doExecute() throws IOException, MojoExecutionException {
+    if (compressionLevel < -1 || compressionLevel > 9) {
+      throw new MojoExecutionException(
+          "compressionLevel must be from 0 to 9, or -1 for the default level; was "
+              + compressionLevel);
+    }
     /*
      * Directory which holds compose application configuration(s). Compose files should be in
      * subdirectories to namespace the configuration.
      */
     Path composeSrcPath = Path.of(source);
     if (Files.isDirectory(composeSrcPath)) {
-      yaml = ComposeConstructor.createParser();
       artifactHelper = new ArtifactHelper(project, composeSrcPath, repoSystem, repoSession);
       coordinatesToInfo = new HashMap<>();
       serviceToCoordinates = new HashMap<>();
+      entryTime = parseTimestamp(outputTimestamp);
+      List<String> stored = storedIncludes != null ? storedIncludes : COMPRESSED_FORMATS;
+      FilterSelector storedSelector =
+          stored.isEmpty() ? null : new FilterSelector(stored, List.of());
+      assetWriter = new AssetWriter(storedSelector, storedSize);
 
       ArtifactHelper.forEach(dependencies, this::addDependency);
 
-      artifactHelper.processComposeSrc(getLog(), this::readComposeFile, true);
-      artifactHelper.processComposeSrc(getLog(), this::writeComposeJar, false);
+      List<ComposeSource> sources = artifactHelper.scanComposeSrc(getLog());
+      for (ComposeSource source : sources) {
+        readComposeFile(source.classifier(), source.compose());
+        if (source.override() != null) {
+          readComposeFile(source.classifier(), source.override());
+        }
+      }
+      writeComposeJars(sources);
       if (!coordinatesToInfo.isEmpty()) {
         return;
       }
@@ -98,31 +166,24 @@ public class ComposeAssemble extends ComposeGoal {
     artifactHelper.addArtifact(artifact, this::addArtifact);
   }
 
-  private void addArtifact(Coordinates nvp, File file)
-      throws IOException, MojoExecutionException, RepositoryException {
+  private void addArtifact(Coordinates nvp, File file) throws IOException, MojoExecutionException {
     if (nvp.prior() != null) {
       throw new MojoExecutionException(nvp.gav() + " previously had version " + nvp.prior());
     }
     getLog().debug("adding dependency " + nvp.key());
-    try (JarReader jr =
-        new JarReader(file) {
-          @Override
-          void process() throws IOException {
-            if (isManifestEntry()) {
-              String[] services = extractMainAttributes(SERVICES);
-              for (String service : services) {
-                serviceToCoordinates.put(service, nvp.gav());
-              }
-            }
-          }
-        }) {
-      jr.visitEntries();
+    JarFacts facts = artifactHelper.readJar(file);
+    for (String service : facts.services()) {
+      serviceToCoordinates.put(service, nvp.gav());
     }
   }
 
-  void readComposeFile(String classifier, String namespace, Path composeYaml) throws IOException {
+  private void readComposeFile(String classifier, Path composeYaml)
+      throws IOException, MojoExecutionException {
     String contents = Files.readString(composeYaml);
-    Map<String, Object> model = yaml.load(contents);
+    if (validate) {
+      validateCompose(composeYaml, contents);
+    }
+    Map<String, Object> model = yaml.get().load(contents);
     String coordinates = artifactHelper.coordinatesFromClassifier(classifier);
     List<ServiceInfo> serviceInfos;
     if (model.get("services") instanceof Map<?, ?> services) {
@@ -134,6 +195,24 @@ public class ComposeAssemble extends ComposeGoal {
         coordinates, new ArtifactInfo(coordinates, composeYaml, contents, serviceInfos));
   }
 
+  private void validateCompose(Path composeYaml, String contents) throws MojoExecutionException {
+    List<Violation> violations =
+        SchemaValidator.composeSpec().validate(yaml.get().compose(new StringReader(contents)));
+    boolean failed = false;
+    for (Violation violation : violations) {
+      if (violation.warning()) {
+        getLog().warn(composeYaml + ": " + violation);
+      } else {
+        getLog().error(composeYaml + ": " + violation);
+        failed = true;
+      }
+    }
+    if (failed) {
+      throw new MojoExecutionException(
+          composeYaml + " does not conform to the compose specification");
+    }
+  }
+
   private List<ServiceInfo> readServices(String coordinates, Map<?, ?> services) {
     List<ServiceInfo> serviceInfos = new ArrayList<>();
     for (Map.Entry<?, ?> entries : services.entrySet()) {
@@ -179,21 +258,113 @@ public class ComposeAssemble extends ComposeGoal {
     serviceInfos.add(new ServiceInfo(serviceName, dependsOn));
   }
 
-  private void writeComposeJar(String classifier, String namespace, Path composeYaml)
-      throws IOException {
-    Path destPath = artifactHelper.jarPath(classifier);
-    ArtifactInfo info = coordinatesToInfo.get(artifactHelper.coordinatesFromClassifier(classifier));
+  /** Write the jars concurrently, then attach them in source order */
+  private void writeComposeJars(List<ComposeSource> sources) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try {
+      List<Future<Path>> futures = new ArrayList<>(sources.size());
+      for (ComposeSource source : sources) {
+        Callable<Path> writer = () -> writeComposeJar(source);
+        futures.add(executor.submit(writer));
+      }
+      for (int i = 0; i < sources.size(); ++i) {
+        Path destPath = FutureHelper.await(futures.get(i));
+        if (attach) {
+          getLog().debug("attaching " + destPath);
+          projectHelper.attachArtifact(
+              project, "jar", sources.get(i).classifier(), destPath.toFile());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** The UTC time of the jar entries, or null if the output is not reproducible */
+  static LocalDateTime parseTimestamp(String timestamp) throws MojoExecutionException {
+    if (timestamp == null || timestamp.length() < 2) {
+      return null;
+    }
+    try {
+      Instant instant =
+          timestamp.chars().allMatch(Character::isDigit)
+              ? Instant.ofEpochSecond(Long.parseLong(timestamp))
+              : OffsetDateTime.parse(timestamp).toInstant();
+      return LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    } catch (DateTimeException | NumberFormatException e) {
+      throw new MojoExecutionException(
+          "Invalid project.build.outputTimestamp value '"
+              + timestamp
+              + "', expected ISO-8601 with offset or seconds since the epoch",
+          e);
+    }
+  }
+
+  private Path writeComposeJar(ComposeSource source) throws IOException {
+    Path destPath = artifactHelper.jarPath(source.classifier());
+    ArtifactInfo info =
+        coordinatesToInfo.get(artifactHelper.coordinatesFromClassifier(source.classifier()));
+    Manifest manifest = createManifest(info);
+
+    // skip the write if the prior jar was built from the same inputs
+    String inputs = inputsHash(source, manifest);
+    Path inputsPath = destPath.resolveSibling(destPath.getFileName() + ".inputs");
+    if (Files.isRegularFile(destPath)
+        && Files.isReadable(inputsPath)
+        && inputs.equals(Files.readString(inputsPath))) {
+      getLog().debug(destPath + " is up to date");
+      return destPath;
+    }
+    Files.deleteIfExists(inputsPath);
+
     try (JarOutputStream destination =
         new JarOutputStream(
             Files.newOutputStream(
-                destPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING),
-            createManifest(info))) {
-      jarArtifact(info, destination, namespace, composeYaml.getParent());
+                destPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
+      destination.setLevel(compressionLevel);
+      destination.putNextEntry(jarEntry(JarFile.MANIFEST_NAME, null));
+      manifest.write(destination);
+      destination.closeEntry();
+      ComposeIndex index = new ComposeIndex();
+      jarArtifact(info, destination, source, index);
+      destination.putNextEntry(jarEntry(ComposeIndex.INDEX_ENTRY, null));
+      destination.write(yaml.get().dump(index.toMap()).getBytes(StandardCharsets.UTF_8));
+      destination.closeEntry();
     }
-    if (attach) {
-      getLog().debug("attaching " + destPath);
-      projectHelper.attachArtifact(project, "jar", classifier, destPath.toFile());
+    Files.writeString(inputsPath, inputs);
+    return destPath;
+  }
+
+  /** Hash of everything which determines the jar content */
+  private String inputsHash(ComposeSource source, Manifest manifest) throws IOException {
+    MessageDigest digest = HashHelper.newDigest();
+    HashHelper.update(digest, String.valueOf(entryTime));
+    HashHelper.update(digest, storedIncludes + ":" + storedSize);
+    HashHelper.update(digest, Integer.toString(compressionLevel));
+    ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+    manifest.write(manifestBytes);
+    digest.update(manifestBytes.toByteArray());
+    for (Path path : source.files()) {
+      HashHelper.update(digest, ArtifactHelper.namespacedPath(source.namespace(), path));
+      if (entryTime == null) {
+        HashHelper.update(digest, Long.toString(path.toFile().lastModified()));
+      }
+      try (InputStream is = Files.newInputStream(path)) {
+        HashHelper.update(digest, is);
+      }
     }
+    return HashHelper.hex(digest);
+  }
+
+  /** A jar entry with the reproducible time, or else the last modified time of the source */
+  private JarEntry jarEntry(String name, Path path) {
+    JarEntry entry = new JarEntry(name);
+    if (entryTime != null) {
+      entry.setTimeLocal(entryTime);
+    } else if (path != null) {
+      entry.setTime(path.toFile().lastModified());
+    }
+    return entry;
   }
 
   private Manifest createManifest(ArtifactInfo info) {
@@ -209,18 +380,21 @@ public class ComposeAssemble extends ComposeGoal {
       mainAttributes.putValue(JarReader.SERVICES, services);
     }
 
-    String dependencyCommaList =
-        info.serviceInfos.stream()
-            .flatMap(si -> si.dependsOn.stream())
-            .flatMap(this::serviceToCoordinates)
-            .filter(c -> !c.equals(info.coordinates))
-            .collect(Collectors.joining(","));
+    String dependencyCommaList = String.join(",", directDependencies(info));
     if (!dependencyCommaList.isEmpty()) {
       mainAttributes.putValue(JarReader.DEPENDENCIES, dependencyCommaList);
     }
     return manifest;
   }
 
+  private List<String> directDependencies(ArtifactInfo info) {
+    return info.serviceInfos.stream()
+        .flatMap(si -> si.dependsOn.stream())
+        .flatMap(this::serviceToCoordinates)
+        .filter(c -> !c.equals(info.coordinates))
+        .toList();
+  }
+
   private Stream<String> serviceToCoordinates(String service) {
     String coordinates = serviceToCoordinates.get(service);
     if (coordinates == null) {
@@ -230,26 +404,29 @@ public class ComposeAssemble extends ComposeGoal {
   }
 
   private void jarArtifact(
-      ArtifactInfo info, JarOutputStream stream, String namespace, Path directory)
+      ArtifactInfo info, JarOutputStream stream, ComposeSource source, ComposeIndex index)
       throws IOException {
-    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
-      for (Path path : files) {
-        jarFile(info, stream, namespace, path);
-      }
+    for (Path path : source.files()) {
+      jarFile(info, stream, ArtifactHelper.namespacedPath(source.namespace(), path), path, index);
     }
   }
 
-  private void jarFile(ArtifactInfo info, JarOutputStream stream, String namespace, Path path)
+  /** Write the file into the jar, indexing compose files */
+  private void jarFile(
+      ArtifactInfo info, JarOutputStream stream, String name, Path path, ComposeIndex index)
       throws IOException {
-    JarEntry entry = new JarEntry(ArtifactHelper.namespacedPath(namespace, path));
-    entry.setTime(path.toFile().lastModified());
-    stream.putNextEntry(entry);
-    if (path.equals(info.composePath)) {
-      stream.write(info.composeSpec.getBytes(StandardCharsets.UTF_8));
-    } else {
-      Files.copy(path, stream);
+    if (!path.equals(info.composePath) && !ComposeLink.isCompose(name)) {
+      assetWriter.write(stream, jarEntry(name, path), path);
+      return;
     }
+    stream.putNextEntry(jarEntry(name, path));
+    byte[] content =
+        path.equals(info.composePath)
+            ? info.composeSpec.getBytes(StandardCharsets.UTF_8)
+            : Files.readAllBytes(path);
+    stream.write(content);
     stream.closeEntry();
+    index.addCompose(name, new String(content, StandardCharsets.UTF_8), yaml.get());
   }
 
   record ArtifactInfo(
@@ -20,6 +20,12 @@ public class ComposeDown extends ComposeLogsGoal {
 
     removeUserProperties();
 
+    if (reuse) {
+      saveServiceLogs();
+      getLog().info("Reusable project " + project + " left running");
+      return;
+    }
+
     CommandBuilder builder = createBuilder("stop");
     // stop all services in linked compose file
     readServices().forEach(builder::addOption);
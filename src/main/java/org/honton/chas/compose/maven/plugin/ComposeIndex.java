@@ -0,0 +1,147 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+/**
+ * Precomputed facts about the compose files of an assembled artifact, stored within the artifact.
+ * The index allows link to copy a compose file, and collect its mounts, without parsing the file.
+ */
+@Data
+@Accessors(chain = true)
+class ComposeIndex {
+
+  /** jar entry which holds the index */
+  static final String INDEX_ENTRY = "META-INF/compose-index.yaml";
+
+  private static final String FILES = "files";
+
+  /** entry name -> facts about the compose file */
+  private Map<String, FileInfo> files = new LinkedHashMap<>();
+
+  /**
+   * Read the index of a jar
+   *
+   * @param jarFile The assembled jar
+   * @return The index, or null if the jar does not have an index
+   */
+  static ComposeIndex read(JarFile jarFile) throws IOException {
+    JarEntry entry = jarFile.getJarEntry(INDEX_ENTRY);
+    if (entry == null) {
+      return null;
+    }
+    try (InputStream is = jarFile.getInputStream(entry)) {
+      Map<String, Object> map = new Yaml(new SafeConstructor(new LoaderOptions())).load(is);
+      return map != null ? fromMap(map) : null;
+    }
+  }
+
+  static ComposeIndex fromMap(Map<String, Object> map) {
+    ComposeIndex index = new ComposeIndex();
+    if (map.get(FILES) instanceof Map<?, ?> files) {
+      files.forEach(
+          (name, info) ->
+              index.files.put((String) name, FileInfo.fromMap((Map<String, Object>) info)));
+    }
+    return index;
+  }
+
+  Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    Map<String, Object> fileMaps = new LinkedHashMap<>();
+    files.forEach((name, info) -> fileMaps.put(name, info.toMap()));
+    map.put(FILES, fileMaps);
+    return map;
+  }
+
+  /**
+   * Index the ports and mounts of a compose file
+   *
+   * @param name The entry name
+   * @param content The compose file content
+   * @param parser Parser of compose files
+   */
+  void addCompose(String name, String content, Yaml parser) {
+    Object parsed;
+    try {
+      parsed = parser.load(content);
+    } catch (YAMLException e) {
+      // link parses, and reports, the file
+      return;
+    }
+    if (parsed instanceof Map<?, ?> unTyped) {
+      Map<String, Object> model = (Map<String, Object>) unTyped;
+      ServiceRewriter mounts = new ServiceRewriter();
+      mounts.collectModelMounts(model);
+      files.put(
+          name,
+          new FileInfo()
+              .setPlaceholders(content.contains("${"))
+              .setVariablePorts(ServiceRewriter.variablePorts(model))
+              .setMounts(mounts.getHostMounts().stream().sorted().toList()));
+    }
+  }
+
+  /**
+   * The facts of a compose file which may be copied without parsing
+   *
+   * @param name The entry name
+   * @param filtered True if the file would be interpolated
+   * @return The facts, or null if the file needs parsing
+   */
+  FileInfo verbatim(String name, boolean filtered) {
+    FileInfo info = files.get(name);
+    return info != null && info.variablePorts.isEmpty() && !(filtered && info.placeholders)
+        ? info
+        : null;
+  }
+
+  /** Facts about a single compose file */
+  @Data
+  @Accessors(chain = true)
+  static class FileInfo {
+    private static final String PLACEHOLDERS = "placeholders";
+    private static final String VARIABLE_PORTS = "variablePorts";
+    private static final String MOUNTS = "mounts";
+
+    /** whether the content holds a {@code ${} placeholder */
+    private boolean placeholders;
+
+    /** property expression of each variable port */
+    private List<String> variablePorts = new ArrayList<>();
+
+    /** host mounts */
+    private List<String> mounts = new ArrayList<>();
+
+    static FileInfo fromMap(Map<String, Object> map) {
+      return new FileInfo()
+          .setPlaceholders(Boolean.TRUE.equals(map.get(PLACEHOLDERS)))
+          .setVariablePorts((List<String>) map.getOrDefault(VARIABLE_PORTS, List.of()))
+          .setMounts((List<String>) map.getOrDefault(MOUNTS, List.of()));
+    }
+
+    Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put(PLACEHOLDERS, placeholders);
+      if (!variablePorts.isEmpty()) {
+        map.put(VARIABLE_PORTS, variablePorts);
+      }
+      if (!mounts.isEmpty()) {
+        map.put(MOUNTS, mounts);
+      }
+      return map;
+    }
+  }
+}
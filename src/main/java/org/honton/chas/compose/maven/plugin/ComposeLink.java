@@ -1,24 +1,19 @@
 package org.honton.chas.compose.maven.plugin;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import javax.inject.Inject;
-import lombok.SneakyThrows;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Component;
@@ -26,14 +21,17 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.interpolation.Interpolator;
-import org.codehaus.plexus.interpolation.InterpolatorFilterReader;
 import org.eclipse.aether.RepositoryException;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
-import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.artifact.Artifact;
 import org.honton.chas.compose.maven.plugin.ArtifactHelper.Coordinates;
 import org.honton.chas.compose.maven.plugin.ArtifactHelper.InputStreamSupplier;
+import org.honton.chas.compose.maven.plugin.ComposeIndex.FileInfo;
+import org.honton.chas.compose.maven.plugin.DependencyResolver.Resolved;
+import org.honton.chas.compose.maven.plugin.ExtractionCache.CachedArtifact;
+import org.honton.chas.compose.maven.plugin.ExtractionPipeline.Turn;
+import org.honton.chas.compose.maven.plugin.yaml.ComposeMerger;
 import org.honton.chas.compose.maven.plugin.yaml.ComposeRepresenter;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
@@ -42,19 +40,13 @@ import org.yaml.snakeyaml.Yaml;
 @Mojo(name = "link", defaultPhase = LifecyclePhase.TEST, threadSafe = true)
 public class ComposeLink extends ComposeProjectGoal {
 
-  public static final String HOST_IP = "host_ip";
-  private static final String PUBLISHED = "published";
-  private static final String TARGET = "target";
-
-  @SuppressWarnings("PMD.AvoidUsingHardCodedIP")
-  private static final String ALL_INTERFACES = "0.0.0.0";
-
-  private final Interpolator interpolator;
+  public static final String LINK_FINGERPRINT = "link-fingerprint.yaml";
+  private final RecordingInterpolator interpolator;
   private final Yaml yaml;
-  private final Yaml json;
+  private final ThreadLocal<Yaml> workerYaml = ThreadLocal.withInitial(ComposeLink::createYaml);
+  private final ThreadLocal<Yaml> workerJson = ThreadLocal.withInitial(ComposeLink::createJson);
   private final Set<Path> createdDirs = new HashSet<>();
-  private final Set<String> hostMounts = new HashSet<>();
-  private final Map<String, PortInfo> variablePorts = new HashMap<>();
+  private final ServiceRewriter serviceRewriter = new ServiceRewriter();
 
   /** Dependency list in 'Group:Artifact:Version' or 'Group:Artifact::Classifier:Version' form */
   @Parameter List<String> dependencies;
@@ -63,6 +55,23 @@ public class ComposeLink extends ComposeProjectGoal {
   @Parameter(property = "compose.filter", defaultValue = "true")
   boolean filter;
 
+  /**
+   * Glob patterns of the linked entries to interpolate, relative to the compose project directory.
+   * When empty, all entries are interpolated. Entries which are not interpolated are copied byte
+   * for byte.
+   */
+  @Parameter List<String> filterIncludes;
+
+  /** Glob patterns of the linked entries which are not interpolated */
+  @Parameter List<String> filterExcludes;
+
+  /**
+   * Extract released dependencies once into a content addressed cache within the local repository,
+   * then hard link the entries which are not interpolated into the compose project.
+   */
+  @Parameter(property = "compose.cache", defaultValue = "false")
+  boolean cache;
+
   /**
    * Directory which holds compose application configuration(s). Compose files should be in
    * subdirectories to namespace the configuration.
@@ -70,6 +79,37 @@ public class ComposeLink extends ComposeProjectGoal {
   @Parameter(property = "compose.source", defaultValue = "${project.basedir}/src/main/compose")
   String source;
 
+  /** Skip linking when the dependencies, compose sources, and interpolated values are unchanged */
+  @Parameter(property = "compose.incremental", defaultValue = "true")
+  boolean incremental;
+
+  /**
+   * How compose files are merged into the linked application. CLI - merge with `compose config`;
+   * JVM - merge in process; VERIFY - merge in process, then validate the result with `compose
+   * config`.
+   */
+  @Parameter(property = "compose.merge", defaultValue = "CLI")
+  Merge merge;
+
+  /**
+   * Rewrite compose files as a stream of yaml events, rather than loading and dumping the complete
+   * model. Comments and formatting outside of service ports are preserved.
+   */
+  @Parameter(property = "compose.streaming", defaultValue = "false")
+  boolean streaming;
+
+  /**
+   * Lock file which records the resolved compose dependency graph. When the lock matches the
+   * declared dependencies, the locked artifacts are fetched without walking the graph. The lock is
+   * written by the `lock` goal.
+   */
+  @Parameter(property = "compose.lockFile", defaultValue = "${project.basedir}/compose-deps.lock")
+  String lockFile;
+
+  /** Number of threads used to read dependency manifests and to extract compose artifacts */
+  @Parameter(property = "compose.threads", defaultValue = "4")
+  int threads;
+
   @Parameter(defaultValue = "${project}", required = true, readonly = true)
   MavenProject mavenProject;
 
@@ -80,94 +120,146 @@ public class ComposeLink extends ComposeProjectGoal {
 
   private CommandBuilder commandBuilder;
   private ArtifactHelper artifactHelper;
+  private ExtractionPipeline pipeline;
+  private FilterSelector filterSelector;
+  private ExtractionCache extractionCache;
 
   @Inject
   public ComposeLink(MavenSession session, MavenProject project) {
-    interpolator = InterpolatorFactory.createInterpolator(session, project);
+    interpolator = InterpolatorFactory.createRecordingInterpolator(session, project);
+    yaml = createYaml();
+  }
 
+  private static Yaml createYaml() {
     DumperOptions yamlOptions = new DumperOptions();
     yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
     yamlOptions.setDefaultScalarStyle(DumperOptions.ScalarStyle.PLAIN);
-    yaml = ComposeRepresenter.createDumper(yamlOptions);
+    return ComposeRepresenter.createDumper(yamlOptions);
+  }
 
+  private static Yaml createJson() {
     DumperOptions jsonOptions = new DumperOptions();
     jsonOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.FLOW);
     jsonOptions.setDefaultScalarStyle(DumperOptions.ScalarStyle.DOUBLE_QUOTED);
     jsonOptions.setWidth(Integer.MAX_VALUE);
-    json = new Yaml(jsonOptions);
+    return new Yaml(jsonOptions);
   }
 
   private static BufferedWriter bufferedWriter(Path dstPath) throws IOException {
+    // the destination may be a link into the shared extraction cache
+    Files.deleteIfExists(dstPath);
     return Files.newBufferedWriter(
         dstPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
   }
 
-  private static boolean isIpV6(String hostIp) {
-    return hostIp.indexOf(':') >= 0;
-  }
-
-  private static boolean isCompose(String name) {
+  static boolean isCompose(String name) {
     return name.endsWith(".yaml") || name.endsWith(".yml") || name.endsWith(".json");
   }
 
   @Override
   void doCommands() throws IOException, MojoExecutionException {
+    Path composeSrcPath = Path.of(source);
+    filterSelector = new FilterSelector(filterIncludes, filterExcludes);
+    artifactHelper = new ArtifactHelper(mavenProject, composeSrcPath, repoSystem, repoSession);
+    if (cache) {
+      Path localRepository = repoSession.getLocalRepository().getBasedir().toPath();
+      extractionCache = new ExtractionCache(localRepository.resolve(".compose-cache"));
+    }
+    List<Resolved> resolved = resolveDependencies();
+
+    LinkFingerprint fingerprint = null;
+    if (incremental) {
+      fingerprint = createFingerprint(resolved, composeSrcPath);
+      if (Files.isReadable(composeFile) && fingerprint.isCurrent(interpolator)) {
+        getLog().info("Compose inputs unchanged, `compose config` not executed");
+        return;
+      }
+      fingerprint.delete();
+    }
+
     commandBuilder = createBuilder("config");
-    if (addComposeOptions()) {
-      executeComposeCommand(commandBuilder, timeout);
+    if (addComposeOptions(resolved, composeSrcPath)) {
+      mergeComposeFiles();
 
       writeMounts();
       writePorts();
+      if (fingerprint != null) {
+        fingerprint.write(interpolator.getRecorded());
+      }
     }
   }
 
-  private void addDependency(String dependency)
-      throws MojoExecutionException, RepositoryException, IOException {
-    DefaultArtifact artifact = ArtifactHelper.composeArtifact(dependency);
-    artifactHelper.addArtifact(artifact, this::addArtifact);
-  }
-
-  private void addArtifact(Coordinates nvp, File file)
-      throws IOException, MojoExecutionException, RepositoryException {
-    if (nvp.prior() != null) {
-      int compare = SemVer.valueOf(nvp.version()).compareTo(SemVer.valueOf(nvp.prior()));
-      if (compare == 0) {
-        getLog().debug("Ignoring duplicate artifact " + nvp.gav());
-        return;
-      }
-      if (compare < 0) {
-        getLog().info("Ignoring lesser artifact " + nvp.gav() + ", using version " + nvp.prior());
-        return;
+  private List<Resolved> resolveDependencies() throws IOException, MojoExecutionException {
+    List<Artifact> roots = ArtifactHelper.composeArtifacts(dependencies);
+    try {
+      DependencyLock lock = DependencyLock.read(Path.of(lockFile));
+      if (lock != null) {
+        List<Resolved> locked = lock.resolve(artifactHelper, roots, getLog());
+        if (locked != null) {
+          getLog().debug("Using dependency lock " + lockFile);
+          return locked;
+        }
       }
-      getLog().info("Replacing artifact " + nvp.gav() + " with version " + nvp.version());
-    } else {
-      getLog().debug("adding dependency " + nvp.key());
+      return new DependencyResolver(artifactHelper, getLog(), threads).resolve(roots);
+    } catch (RepositoryException e) {
+      throw new MojoExecutionException(e.getMessage(), e);
     }
+  }
 
-    try (JarReader jr =
-        new JarReader(file) {
-          @Override
-          void process() throws IOException, MojoExecutionException, RepositoryException {
-            if (isManifestEntry()) {
-              extractDependencies(extractMainAttributes(DEPENDENCIES));
-            } else {
-              processArtifact(nvp, getName(), this::getInputStream);
-            }
-          }
-        }) {
-      jr.visitEntries();
+  private LinkFingerprint createFingerprint(List<Resolved> resolved, Path composeSrcPath)
+      throws IOException {
+    LinkFingerprint fingerprint =
+        new LinkFingerprint(composeProject.resolve(LINK_FINGERPRINT), yaml)
+            .add(cli)
+            .add(project)
+            .add(Boolean.toString(filter))
+            .add(String.valueOf(filterIncludes))
+            .add(String.valueOf(filterExcludes))
+            .add(merge.name())
+            .add(Boolean.toString(streaming));
+    for (Resolved artifact : resolved) {
+      fingerprint.add(artifact.artifact().toString()).addFile(artifact.file().toPath());
     }
+    return fingerprint.addTree(composeSrcPath);
   }
 
-  void extractDependencies(String[] dependencies)
-      throws MojoExecutionException, IOException, RepositoryException {
-    for (String dependency : dependencies) {
-      addDependency(dependency);
+  private void addArtifact(Resolved resolved) throws IOException {
+    Coordinates nvp = artifactHelper.lookup(resolved.artifact().toString());
+    CachedArtifact cached =
+        extractionCache != null && !resolved.artifact().isSnapshot()
+            ? extractionCache.extract(resolved.artifact(), resolved.file())
+            : null;
+    ComposeIndex index = artifactHelper.readJar(resolved.file()).index();
+    // entries are read by the pipeline workers, the jar is closed with the pipeline
+    JarReader jr =
+        pipeline.keepOpen(
+            new JarReader(resolved.file()) {
+              @Override
+              void process() throws IOException {
+                if (!isMetaInfEntry()) {
+                  processArtifact(nvp, getName(), getInputStreamSupplier(), cached, index);
+                }
+              }
+            });
+    try {
+      jr.visitEntries();
+    } catch (MojoExecutionException | RepositoryException e) {
+      throw new IOException(e.getMessage(), e);
     }
   }
 
   private void processArtifact(Coordinates nvp, String name, InputStreamSupplier iss)
       throws IOException {
+    processArtifact(nvp, name, iss, null, null);
+  }
+
+  private void processArtifact(
+      Coordinates nvp,
+      String name,
+      InputStreamSupplier iss,
+      CachedArtifact cached,
+      ComposeIndex index)
+      throws IOException {
     getLog().debug("processing artifact: " + nvp.gav());
 
     Path absoluteDstPath = composeProject.resolve(name);
@@ -179,218 +271,167 @@ public class ComposeLink extends ComposeProjectGoal {
     }
 
     Path relativeDstPath = composeProject.relativize(absoluteDstPath);
-    if (isCompose(name)) {
+    boolean compose = isCompose(name);
+    boolean filtered = filter && filterSelector.matches(name);
+    if (compose) {
       commandBuilder.addFile(relativeDstPath.toString());
     } else if (name.endsWith("/.env")) {
       commandBuilder.addGlobalOption("--env-file", relativeDstPath.toString());
     }
 
-    try (InputStream stream = iss.get()) {
-      copyYaml(stream, absoluteDstPath);
-    }
+    // an indexed compose file without variable ports or placeholders needs no parsing
+    FileInfo info = compose && index != null ? index.verbatim(name, filtered) : null;
+    boolean indexed = info != null;
+
+    pipeline.submit(
+        absoluteDstPath,
+        compose,
+        turn -> {
+          if (indexed) {
+            turn.await();
+            serviceRewriter.addHostMounts(info.getMounts());
+            turn.release();
+            copyBytes(iss, absoluteDstPath, cached, name);
+          } else if (compose) {
+            try (InputStream stream = iss.get()) {
+              copyYaml(stream, absoluteDstPath, filtered, turn);
+            }
+          } else if (cached != null && !(filtered && cached.placeholders().contains(name))) {
+            // assets may be bind mounted, and written by a container
+            cached.copyTo(name, absoluteDstPath);
+          } else {
+            copyAsset(iss, absoluteDstPath, filtered);
+          }
+        });
   }
 
-  private void copyYaml(InputStream source, Path dstPath) throws IOException {
-    Reader reader = interpolateReader(source);
-    try (BufferedWriter writer = bufferedWriter(dstPath)) {
-      String name = dstPath.getFileName().toString();
-      if (isCompose(name)) {
-        Map<String, Object> model = yaml.load(reader);
-        replaceVariablePorts(model);
-        (name.endsWith(".json") ? json : yaml).dump(model, writer);
-      } else {
-        reader.transferTo(writer);
+  private static void copyBytes(
+      InputStreamSupplier iss, Path dstPath, CachedArtifact cached, String name)
+      throws IOException {
+    if (cached != null) {
+      cached.linkTo(name, dstPath);
+    } else {
+      try (InputStream stream = iss.get()) {
+        Files.copy(stream, dstPath, StandardCopyOption.REPLACE_EXISTING);
       }
     }
   }
 
-  private void replaceVariablePorts(Map<String, Object> model) {
-    if (model.get("services") instanceof Map<?, ?> unTyped) {
-      Map<String, Map<String, Object>> services = (Map<String, Map<String, Object>>) unTyped;
-      services.forEach(this::replaceVariablePorts);
-      services.forEach(this::collectHostMounts);
-    }
-  }
-
-  private void replaceVariablePorts(String serviceName, Map<String, Object> serviceDefinition) {
-    if (serviceDefinition.get("ports") instanceof List<?> unTyped) {
-      List<Object> replacement =
-          unTyped.stream().map(port -> getReplacement(serviceName, port)).toList();
-      serviceDefinition.put("ports", replacement);
-    }
-  }
-
-  @SneakyThrows
-  private Object getReplacement(String serviceName, Object port) {
-    if (port instanceof String shortForm) {
-      return shortFormReplacement(serviceName, shortForm);
-    }
-    if (port instanceof Map longForm) {
-      return longFormReplacement(serviceName, longForm);
-    }
-    return port;
-  }
-
-  private Object shortFormReplacement(String serviceName, String shortForm)
-      throws MojoExecutionException {
-    int hostContainerIdx = shortForm.lastIndexOf(':');
-    if (hostContainerIdx < 0) {
-      return shortForm;
+  /** Copy bytes, then interpolate only if filtering would change the content */
+  private void copyAsset(InputStreamSupplier iss, Path dstPath, boolean filtered)
+      throws IOException {
+    PlaceholderScanner scanner;
+    try (InputStream stream = iss.get()) {
+      scanner = new PlaceholderScanner(stream);
+      Files.copy(scanner, dstPath, StandardCopyOption.REPLACE_EXISTING);
     }
-
-    Map<String, Object> longForm = new HashMap<>();
-
-    String host = shortForm.substring(0, hostContainerIdx);
-    String property;
-    String hostIp;
-    int ipHostIdx = host.lastIndexOf(':');
-    if (ipHostIdx < 0) {
-      property = host;
-      hostIp = ALL_INTERFACES;
-    } else {
-      property = host.substring(ipHostIdx + 1);
-      hostIp = host.substring(0, ipHostIdx);
-      if (isIpV6(hostIp)) {
-        throw new MojoExecutionException("port variables not supported for IPv6");
+    if (filtered && scanner.isFilterable()) {
+      try (InputStream stream = iss.get();
+          BufferedWriter writer = bufferedWriter(dstPath)) {
+        compileTemplate(stream).render(interpolator, writer);
       }
     }
-    longForm.put(HOST_IP, hostIp);
-    if (property.isEmpty() || Character.isDigit(property.charAt(0))) {
-      return shortForm;
-    }
-
-    String container = shortForm.substring(hostContainerIdx + 1);
-    int containerProtocolIdx = container.lastIndexOf('/');
-    String target;
-    if (containerProtocolIdx < 0) {
-      target = container;
-    } else {
-      target = container.substring(0, containerProtocolIdx);
-      longForm.put("protocol", container.substring(containerProtocolIdx + 1));
-    }
-    longForm.put(TARGET, Integer.valueOf(target));
-
-    if (container.indexOf('-') >= 0) {
-      throw new MojoExecutionException("range not supported for variable port");
-    }
-
-    String env = addVariablePort(serviceName, property, container);
-    if (env != null) {
-      longForm.put(PUBLISHED, env);
-    }
-    return longForm;
   }
 
-  private Map<String, Object> longFormReplacement(String serviceName, Map<String, Object> longForm)
-      throws MojoExecutionException {
-
-    if (longForm.get(TARGET) instanceof Integer target) {
-      if (longForm.get(PUBLISHED) instanceof String property
-          && !property.isEmpty()
-          && !Character.isDigit(property.charAt(0))) {
-        if (longForm.get(HOST_IP) instanceof String hostIp && isIpV6(hostIp)) {
-          throw new MojoExecutionException("port variables not supported for IPv6");
-        }
-        String env = addVariablePort(serviceName, property, target.toString());
-        if (env == null) {
-          longForm.remove(PUBLISHED);
-        } else {
-          longForm.put(PUBLISHED, env);
-        }
+  private void copyYaml(InputStream source, Path dstPath, boolean filtered, Turn turn)
+      throws IOException {
+    String text = interpolateText(source, filtered);
+    try (BufferedWriter writer = bufferedWriter(dstPath)) {
+      String name = dstPath.getFileName().toString();
+      boolean isJson = name.endsWith(".json");
+      if (streaming && StreamingRewriter.isStreamable(text)) {
+        new StreamingRewriter(serviceRewriter, turn::await)
+            .rewrite(new StringReader(text), writer, isJson);
+      } else {
+        Map<String, Object> model = workerYaml.get().load(text);
+        // ports and mounts are rewritten in link order
+        turn.await();
+        serviceRewriter.rewrite(model);
+        turn.release();
+        (isJson ? workerJson : workerYaml).get().dump(model, writer);
       }
-    } else {
-      throw new MojoExecutionException("missing port target for service " + serviceName);
     }
-    return longForm;
   }
 
-  private String addVariablePort(String serviceName, String property, String container)
-      throws MojoExecutionException {
-    String key;
-    String env;
-    PortInfo variablePort = new PortInfo().setService(serviceName).setContainer(container);
-    if (property.startsWith("${") && property.endsWith("}")) {
-      key = property.substring(2, property.length() - 1);
-      env = key.toUpperCase(Locale.ROOT).replace('.', '_');
-      variablePort.setEnv(env);
-    } else {
-      key = property;
-      env = null;
-    }
-    variablePort.setProperty(key);
-    PortInfo prior = variablePorts.put(key, variablePort);
-    if (prior != null) {
-      if (prior.equals(variablePort)) {
-        return null;
-      }
-      throw new MojoExecutionException(
-          "property "
-              + key
-              + " for service "
-              + variablePort.getService()
-              + " was previously defined in "
-              + prior.getService());
+  private String interpolateText(InputStream inputStream, boolean filtered) throws IOException {
+    if (filtered) {
+      return compileTemplate(inputStream).render(interpolator);
     }
-    return env != null ? "${" + env + "}" : null;
+    return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
   }
 
-  @SuppressWarnings("PMD.UnusedFormalParameter")
-  private void collectHostMounts(String serviceName, Map<String, Object> model) {
-    if (model.get("volumes") instanceof List<?> volumes) {
-      volumes.forEach(this::collectHostMount);
-    }
+  private static FilterTemplate compileTemplate(InputStream inputStream) throws IOException {
+    return FilterTemplate.compile(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
   }
 
-  private void collectHostMount(Object volume) {
-    if (volume instanceof Map<?, ?> longSyntax) {
-      if ("bind".equals(longSyntax.get("type"))
-          && longSyntax.get("source") instanceof String volumeSource) {
-        collectVolume(volumeSource);
+  private boolean addComposeOptions(List<Resolved> resolved, Path composeSrcPath)
+      throws IOException, MojoExecutionException {
+    try (ExtractionPipeline extraction = new ExtractionPipeline(threads)) {
+      pipeline = extraction;
+      for (Resolved artifact : resolved) {
+        addArtifact(artifact);
       }
-    } else if (volume instanceof String shortSyntax) {
-      int colonIdx = shortSyntax.indexOf(':');
-      if (colonIdx >= 0) {
-        collectVolume(shortSyntax.substring(0, colonIdx));
+      if (Files.isDirectory(composeSrcPath)) {
+        artifactHelper.processComposeSrc(getLog(), this::processLocalArtifact, true);
       }
+      extraction.await();
+    } finally {
+      pipeline = null;
     }
-  }
 
-  private void collectVolume(String volume) {
-    if (!volume.isEmpty()) {
-      char isPath = volume.charAt(0);
-      if (isPath == '/' || isPath == '.') {
-        hostMounts.add(volume);
-      }
+    List<String> files = commandBuilder.getFiles();
+    if (files.isEmpty()) {
+      getLog().info("No artifacts to link, `compose config` not executed");
+      return false;
     }
-  }
 
-  private Reader interpolateReader(InputStream inputStream) {
-    BufferedReader reader =
-        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-    return filter ? new InterpolatorFilterReader(reader, interpolator) : reader;
+    commandBuilder.addGlobalOption("--project-directory", ".");
+    return true;
   }
 
-  private boolean addComposeOptions() throws IOException {
-    Path composeSrcPath = Path.of(source);
-    artifactHelper = new ArtifactHelper(mavenProject, composeSrcPath, repoSystem, repoSession);
-
-    ArtifactHelper.forEach(dependencies, this::addDependency);
-    if (Files.isDirectory(composeSrcPath)) {
-      artifactHelper.processComposeSrc(getLog(), this::processLocalArtifact, true);
+  /**
+   * Merge compose files in the manner of the compose cli
+   *
+   * @param composeProject The compose project directory
+   * @param files The names of the compose files, relative to the project directory
+   * @param projectName The project name, used if the files do not have a name
+   * @return The merged model
+   * @throws MojoExecutionException if a service extends a missing service, or is circular
+   */
+  static Map<String, Object> mergeFiles(Path composeProject, List<String> files, String projectName)
+      throws IOException, MojoExecutionException {
+    ComposeMerger merger = new ComposeMerger(composeProject);
+    try {
+      for (String file : files) {
+        merger.mergeFile(file);
+      }
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException(e.getMessage(), e);
     }
+    return merger.getModel(projectName);
+  }
 
-    List<String> files = commandBuilder.getFiles();
-    if (files.isEmpty()) {
-      getLog().info("No artifacts to link, `compose config` not executed");
-      return false;
+  private void mergeComposeFiles() throws IOException, MojoExecutionException {
+    if (merge == Merge.CLI) {
+      commandBuilder.addOption("--no-interpolate").addOption("--output", COMPOSE_YAML);
+      executeComposeCommand(commandBuilder, timeout);
+      return;
     }
 
-    commandBuilder
-        .addGlobalOption("--project-directory", ".")
-        .addOption("--no-interpolate")
-        .addOption("--output", COMPOSE_YAML);
+    Map<String, Object> model = mergeFiles(composeProject, commandBuilder.getFiles(), project);
+    try (BufferedWriter writer = bufferedWriter(composeFile)) {
+      yaml.dump(model, writer);
+    }
 
-    return true;
+    if (merge == Merge.VERIFY) {
+      CommandBuilder verifyBuilder =
+          createBuilder("config")
+              .addGlobalOption("--project-directory", ".")
+              .addFile(COMPOSE_YAML)
+              .addOption("--no-interpolate")
+              .addOption("--quiet");
+      executeComposeCommand(verifyBuilder, timeout);
+    }
   }
 
   private void processLocalArtifact(String classifier, String namespace, Path composeYaml)
@@ -403,6 +444,7 @@ public class ComposeLink extends ComposeProjectGoal {
 
   private void writeMounts() throws IOException {
     Path mountsFile = composeProject.resolve(MOUNTS_YAML);
+    Set<String> hostMounts = serviceRewriter.getHostMounts();
     if (hostMounts.isEmpty()) {
       Files.deleteIfExists(mountsFile);
     } else {
@@ -414,6 +456,7 @@ public class ComposeLink extends ComposeProjectGoal {
 
   private void writePorts() throws IOException {
     Path portsFile = composeProject.resolve(PORTS_YAML);
+    Map<String, PortInfo> variablePorts = serviceRewriter.getVariablePorts();
     if (variablePorts.isEmpty()) {
       Files.deleteIfExists(portsFile);
     } else {
@@ -422,4 +465,11 @@ public class ComposeLink extends ComposeProjectGoal {
       }
     }
   }
+
+  /** Compose file merge strategies */
+  public enum Merge {
+    CLI,
+    JVM,
+    VERIFY
+  }
 }
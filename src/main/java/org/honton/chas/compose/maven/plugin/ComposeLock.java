@@ -0,0 +1,54 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.honton.chas.compose.maven.plugin.DependencyResolver.Resolved;
+
+/** Resolve the transitive compose dependency graph and record it in a lock file */
+@Mojo(name = "lock", threadSafe = true)
+public class ComposeLock extends ComposeGoal {
+
+  /** Dependency list in 'Group:Artifact:Version' or 'Group:Artifact::Classifier:Version' form */
+  @Parameter List<String> dependencies;
+
+  /** Lock file which records the resolved compose dependency graph */
+  @Parameter(property = "compose.lockFile", defaultValue = "${project.basedir}/compose-deps.lock")
+  String lockFile;
+
+  /** Number of threads used to read dependency manifests */
+  @Parameter(property = "compose.threads", defaultValue = "4")
+  int threads;
+
+  @Parameter(defaultValue = "${project}", required = true, readonly = true)
+  MavenProject mavenProject;
+
+  @Component RepositorySystem repoSystem;
+
+  @Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
+  RepositorySystemSession repoSession;
+
+  @Override
+  void doExecute() throws IOException, MojoExecutionException {
+    ArtifactHelper artifactHelper = new ArtifactHelper(mavenProject, null, repoSystem, repoSession);
+    List<Artifact> roots = ArtifactHelper.composeArtifacts(dependencies);
+    List<Resolved> resolved;
+    try {
+      resolved = new DependencyResolver(artifactHelper, getLog(), threads).resolve(roots);
+    } catch (RepositoryException e) {
+      throw new MojoExecutionException(e.getMessage(), e);
+    }
+    Path lockPath = Path.of(lockFile);
+    DependencyLock.of(artifactHelper, roots, resolved).write(lockPath);
+    getLog().info("Locked " + resolved.size() + " compose artifacts in " + lockPath);
+  }
+}
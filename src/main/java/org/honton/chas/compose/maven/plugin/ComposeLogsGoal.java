@@ -17,6 +17,16 @@ import org.yaml.snakeyaml.Yaml;
 
 public abstract class ComposeLogsGoal extends ComposeProjectGoal {
 
+  /** container label holding the digest of the inputs of a reusable project */
+  static final String INPUTS_LABEL = "org.honton.chas.compose.inputs";
+
+  /**
+   * If true, `down` leaves the project running, and `up` reuses a running project started with the
+   * same inputs.
+   */
+  @Parameter(property = "compose.reuse", defaultValue = "false")
+  boolean reuse;
+
   /** Directory for container logs */
   @Parameter(
       property = "compose.logs",
@@ -65,7 +75,7 @@ public abstract class ComposeLogsGoal extends ComposeProjectGoal {
     return allServices.isEmpty() ? null : allServices.split("\\s+");
   }
 
-  private void saveLogs(String[] services) throws IOException {
+  void saveLogs(String[] services) throws IOException {
     Path logPath = createLogDir();
 
     for (String service : services) {
@@ -0,0 +1,170 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.honton.chas.compose.maven.plugin.JarReader.JarFacts;
+
+/**
+ * Facts about compose artifacts which are shared by every goal execution of a maven session. The
+ * cache is held in the repository session data, so the modules of a parallel reactor build share
+ * one instance. Resolved files are keyed by coordinates and by the remote repositories of the
+ * request, since modules may declare different repositories. Work upon a key or jar is serialized
+ * by a striped lock, so that concurrent modules resolve or read each artifact once. Snapshot
+ * resolutions are not cached, since a reactor module may replace them during the session.
+ */
+class ComposeSessionCache {
+
+  private static final int STRIPES = 64;
+
+  private final Map<String, File> files = new ConcurrentHashMap<>();
+  private final Map<String, CachedFacts> jars = new ConcurrentHashMap<>();
+  private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+  private ComposeSessionCache() {
+    for (int i = 0; i < STRIPES; ++i) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Get the cache of the session, creating it if needed
+   *
+   * @param session The repository session of the build
+   * @return The shared cache
+   */
+  static ComposeSessionCache of(RepositorySystemSession session) {
+    // keyed by class, so that different plugin versions do not share a cache
+    SessionData data = session.getData();
+    Object cache = data.get(ComposeSessionCache.class);
+    while (cache == null) {
+      data.set(ComposeSessionCache.class, null, new ComposeSessionCache());
+      cache = data.get(ComposeSessionCache.class);
+    }
+    return (ComposeSessionCache) cache;
+  }
+
+  private static int stripe(String key) {
+    return Math.floorMod(key.hashCode(), STRIPES);
+  }
+
+  /** Lock the stripes of the keys, in ascending order to avoid deadlock */
+  private List<ReentrantLock> lockAll(List<String> keys) {
+    List<ReentrantLock> held = new ArrayList<>();
+    keys.stream()
+        .mapToInt(ComposeSessionCache::stripe)
+        .distinct()
+        .sorted()
+        .forEach(
+            i -> {
+              locks[i].lock();
+              held.add(locks[i]);
+            });
+    return held;
+  }
+
+  private static void unlockAll(List<ReentrantLock> held) {
+    held.forEach(ReentrantLock::unlock);
+  }
+
+  private static String key(String repositories, Artifact artifact) {
+    return repositories + '|' + artifact;
+  }
+
+  private List<Artifact> uncached(List<Artifact> artifacts, String repositories) {
+    return artifacts.stream()
+        .filter(
+            artifact -> artifact.isSnapshot() || !files.containsKey(key(repositories, artifact)))
+        .toList();
+  }
+
+  /**
+   * Get the local files of artifacts, resolving those not already resolved in this session
+   *
+   * @param artifacts The artifacts
+   * @param repositories Identifies the remote repositories which the resolver uses
+   * @param resolver Resolves a batch of artifacts with a single request
+   * @return The local files, in the same order as the artifacts
+   */
+  List<File> files(List<Artifact> artifacts, String repositories, BatchResolver resolver)
+      throws ArtifactResolutionException, MojoExecutionException {
+    List<Artifact> missing = uncached(artifacts, repositories);
+    Map<String, File> resolved = new HashMap<>();
+    if (!missing.isEmpty()) {
+      List<ReentrantLock> held =
+          lockAll(missing.stream().map(artifact -> key(repositories, artifact)).toList());
+      try {
+        // another module may have resolved the artifacts while this one waited
+        missing = uncached(missing, repositories);
+        if (!missing.isEmpty()) {
+          List<File> fetched = resolver.resolve(missing);
+          for (int i = 0; i < missing.size(); ++i) {
+            Artifact artifact = missing.get(i);
+            String key = key(repositories, artifact);
+            resolved.put(key, fetched.get(i));
+            if (!artifact.isSnapshot()) {
+              files.put(key, fetched.get(i));
+            }
+          }
+        }
+      } finally {
+        unlockAll(held);
+      }
+    }
+    List<File> result = new ArrayList<>(artifacts.size());
+    for (Artifact artifact : artifacts) {
+      String key = key(repositories, artifact);
+      result.add(resolved.getOrDefault(key, files.get(key)));
+    }
+    return result;
+  }
+
+  /**
+   * Get the manifest attributes and index of a jar, reading the jar if not already read or if it
+   * has changed since it was read
+   *
+   * @param jar The compose artifact
+   * @return The facts of the jar
+   */
+  JarFacts jar(File jar) throws IOException {
+    String path = jar.getAbsolutePath();
+    long lastModified = jar.lastModified();
+    long length = jar.length();
+    CachedFacts cached = jars.get(path);
+    if (cached == null || !cached.matches(lastModified, length)) {
+      List<ReentrantLock> held = lockAll(List.of(path));
+      try {
+        cached = jars.get(path);
+        if (cached == null || !cached.matches(lastModified, length)) {
+          cached = new CachedFacts(lastModified, length, JarReader.readFacts(jar));
+          jars.put(path, cached);
+        }
+      } finally {
+        unlockAll(held);
+      }
+    }
+    return cached.facts();
+  }
+
+  @FunctionalInterface
+  interface BatchResolver {
+    List<File> resolve(List<Artifact> artifacts)
+        throws ArtifactResolutionException, MojoExecutionException;
+  }
+
+  private record CachedFacts(long lastModified, long length, JarFacts facts) {
+    boolean matches(long lastModified, long length) {
+      return this.lastModified == lastModified && this.length == length;
+    }
+  }
+}
@@ -1,23 +1,33 @@
 package org.honton.chas.compose.maven.plugin;
 
 import com.sun.security.auth.module.UnixSystem;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.lang.ProcessBuilder.Redirect;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.time.OffsetTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -33,11 +43,19 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.interpolation.InterpolationException;
 import org.codehaus.plexus.interpolation.Interpolator;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
 
 /** Turn on compose application */
 @Mojo(name = "up", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, threadSafe = true)
 public class ComposeUp extends ComposeLogsGoal {
 
+  /** compose override which labels the services of a reusable project */
+  static final String REUSE_YAML = "compose-reuse.yaml";
+
+  // shortest time between listings of container health
+  private static final long MINIMUM_TICK = 250L;
+
   private final Interpolator interpolator;
 
   /** If true, health checks are skipped. */
@@ -60,12 +78,67 @@ public class ComposeUp extends ComposeLogsGoal {
    */
   @Parameter Map<String, String> alias;
 
+  /**
+   * If true, and reuse is true, only the services whose definition, or whose dependencies'
+   * definition, changed are recreated and checked.
+   */
+  @Parameter(property = "compose.differential", defaultValue = "false")
+  boolean differential;
+
+  /**
+   * If true, startup fails as soon as a container exits with a non-zero code, runs out of memory,
+   * or restarts repeatedly.
+   */
+  @Parameter(property = "compose.failFast", defaultValue = "true")
+  boolean failFast;
+
+  /**
+   * How the health of services is detected: EVENTS - health_status events of `compose events`,
+   * polling with `exec` when the engine does not report; EXEC - polling with `exec`; INSPECT -
+   * polling the health of all containers with one `compose ps`.
+   */
+  @Parameter(property = "compose.healthProbe", defaultValue = "EVENTS")
+  HealthProbe healthProbe;
+
+  /**
+   * If true, the published ports of services without a health check are probed from the host until
+   * a connection succeeds. Docker's userland proxy accepts connections to a published port before
+   * the container listens, so a connect-only probe may succeed at once; configure readinessPaths
+   * for ports which serve http.
+   */
+  @Parameter(property = "compose.readiness", defaultValue = "false")
+  boolean readiness;
+
+  /**
+   * Map&lt;String,String> of port property to http path. The readiness probe of such a port is a
+   * GET of the path, which must answer with a status below 400.
+   */
+  @Parameter Map<String, String> readinessPaths;
+
+  /** Maximum number of health probes running at once */
+  @Parameter(property = "compose.healthConcurrency", defaultValue = "8")
+  int healthConcurrency;
+
+  /**
+   * If true, the time each service takes to become healthy is learned across builds, and `exec`
+   * probes are dense around the expected time. The learned times are written to the local
+   * repository.
+   */
+  @Parameter(property = "compose.adaptiveHealth", defaultValue = "false")
+  boolean adaptiveHealth;
+
+  @Parameter(defaultValue = "${settings.localRepository}", readonly = true)
+  String localRepository;
+
   /** Number of seconds to wait for pulling images */
   @Parameter(property = "compose.pullTimeout", defaultValue = "180")
   int pullTimeout;
 
   private Path healthLogPath;
 
+  // time when containers were started, or 0 when reusing running containers
+  private long started;
+
   @Inject
   public ComposeUp(MavenSession session, MavenProject project) {
     interpolator = InterpolatorFactory.createInterpolator(session, project);
@@ -79,41 +152,72 @@ public class ComposeUp extends ComposeLogsGoal {
     }
 
     createHostSourceDirs();
+    Map<String, Object> model = readFile(composeFile);
+    Map<String, String> digests = reuse ? serviceDigests(model) : null;
+    Set<String> changed = digests != null ? changedServices(digests) : null;
+    if (changed != null && changed.isEmpty()) {
+      getLog().info("Compose inputs unchanged, reusing running project " + project);
+      checkHealth(
+          model, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout), null, null);
+      publishProperties();
+      return;
+    }
+    // with differential, only changed services are recreated and checked
+    Set<String> targets = differential && changed != null ? changed : null;
+    if (targets != null) {
+      getLog().info("Recreating changed services " + targets);
+    }
+
     allocatePorts();
     boolean hasEnv = createEnvFile();
+    if (digests != null) {
+      writeReuseLabels(digests);
+    }
 
     // pull images
     final CommandBuilder pullBuilder =
-        createBuilder("up").addOption("--quiet-pull").addOption("--no-start");
+        createUpBuilder(digests != null).addOption("--quiet-pull").addOption("--no-start");
     if (hasEnv) {
       pullBuilder.addGlobalOption("--env-file", DOT_ENV);
     }
+    addTargets(pullBuilder, targets);
     executeComposeCommand(pullBuilder, pullTimeout);
 
     // watch events
-    Process watcher = startEventWatcher(createBuilder("events").addOption("--json"));
+    HealthEvents events =
+        healthProbe == HealthProbe.EVENTS || failFast ? new HealthEvents(failFast) : null;
+    Process watcher = startEventWatcher(createBuilder("events").addOption("--json"), events);
     try {
       // start containers
       final CommandBuilder startBuilder =
-          createBuilder("up")
+          createUpBuilder(digests != null)
               .addOption("--detach")
               .addOption("--renew-anon-volumes")
               .addOption("--remove-orphans");
       if (hasEnv) {
         startBuilder.addGlobalOption("--env-file", DOT_ENV);
       }
+      addTargets(startBuilder, targets);
       try {
-        long deadLine = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout);
+        started = System.currentTimeMillis();
+        long deadLine = started + TimeUnit.SECONDS.toMillis(timeout);
 
         ExecHelper execHelper = new ExecHelper(getLog());
         execHelper.createProcess(startBuilder, null);
 
-        checkHealth(deadLine);
+        checkHealth(model, deadLine, targets, events);
+
+        execHelper.waitForExit(deadLine, events != null ? events::getFailure : () -> null);
 
-        execHelper.waitForExit(deadLine);
+        checkReadiness(model, deadLine, targets);
       } catch (MojoExecutionException e) {
         // if compose up failed, save logs
-        saveServiceLogs();
+        String failedService = events != null ? events.getFailedService() : null;
+        if (failedService != null) {
+          saveLogs(new String[] {failedService});
+        } else {
+          saveServiceLogs();
+        }
         throw e;
       }
     } finally {
@@ -121,6 +225,10 @@ public class ComposeUp extends ComposeLogsGoal {
     }
 
     // if success, assign maven variables
+    publishProperties();
+  }
+
+  private void publishProperties() throws MojoExecutionException {
     portInfos.forEach(this::assignMavenVariable);
     if (alias != null) {
       try {
@@ -131,6 +239,86 @@ public class ComposeUp extends ComposeLogsGoal {
     }
   }
 
+  private CommandBuilder createUpBuilder(boolean labeled) {
+    CommandBuilder builder = createBuilder("up");
+    if (labeled) {
+      builder.addFile(COMPOSE_YAML).addFile(REUSE_YAML);
+    }
+    return builder;
+  }
+
+  private static void addTargets(CommandBuilder builder, Set<String> targets) {
+    if (targets != null) {
+      builder.addOption("--no-deps");
+      targets.forEach(builder::addOption);
+    }
+  }
+
+  /**
+   * Digest of each service. A service digest covers the service definition, the digests of the
+   * services it depends upon, the top level elements other than services, the ports file, and the
+   * variables of the .env file. Allocated ports are not part of the digest, a reused project keeps
+   * its ports.
+   */
+  private Map<String, String> serviceDigests(Map<String, Object> model) throws IOException {
+    MessageDigest common = HashHelper.newDigest();
+    model.forEach(
+        (key, value) -> {
+          if (!"services".equals(key)) {
+            HashHelper.update(common, key + '=' + value);
+          }
+        });
+    Path portsFile = composeProject.resolve(PORTS_YAML);
+    HashHelper.update(common, Files.isReadable(portsFile) ? HashHelper.sha256(portsFile) : "");
+    new TreeMap<>(dotEnv()).forEach((k, v) -> HashHelper.update(common, k + '=' + v));
+    for (PortInfo portInfo : portInfos) {
+      if (portInfo.getEnv() != null) {
+        String key = portInfo.getProperty();
+        HashHelper.update(common, key + '=' + userProperties.getProperty(key, ""));
+      }
+    }
+    String base = HashHelper.hex(common);
+
+    return model.get("services") instanceof Map<?, ?> services
+        ? ServiceDigests.digests(base, services)
+        : new TreeMap<>();
+  }
+
+  /**
+   * Find the services which do not have a running container labeled with the service digest
+   *
+   * @return The names of the changed services
+   */
+  private Set<String> changedServices(Map<String, String> digests) {
+    // exited containers of one-shot services are listed too
+    CommandBuilder builder =
+        createBuilder("ps").addOption("--all").addOption("--format", "{{.Service}} {{.Labels}}");
+    String output;
+    try {
+      output = new ExecHelper(getLog()).outputAsString(builder);
+    } catch (RuntimeException e) {
+      getLog().debug("Unable to list running containers", e);
+      return new TreeSet<>(digests.keySet());
+    }
+    return ServiceDigests.changed(digests, output);
+  }
+
+  /** Write a compose override which labels each service with its digest */
+  private void writeReuseLabels(Map<String, String> digests) throws IOException {
+    Map<String, Object> services = new LinkedHashMap<>();
+    digests.forEach(
+        (name, digest) -> services.put(name, Map.of("labels", Map.of(INPUTS_LABEL, digest))));
+    DumperOptions options = new DumperOptions();
+    options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+    try (Writer writer =
+        Files.newBufferedWriter(
+            composeProject.resolve(REUSE_YAML),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      new Yaml(options).dump(Map.of("services", services), writer);
+    }
+  }
+
   private Map<String, String> getUnixEnv() {
     Map<String, String> unixEnv = new HashMap<>();
     try {
@@ -161,11 +349,17 @@ public class ComposeUp extends ComposeLogsGoal {
     }
   }
 
-  private boolean createEnvFile() throws IOException {
+  /** The variables of the .env file */
+  private Map<String, String> dotEnv() {
     Map<String, String> allEnv = getUnixEnv();
     if (env != null) {
       allEnv.putAll(env);
     }
+    return allEnv;
+  }
+
+  private boolean createEnvFile() throws IOException {
+    Map<String, String> allEnv = dotEnv();
     if (allEnv.isEmpty()) {
       return false;
     }
@@ -208,15 +402,19 @@ public class ComposeUp extends ComposeLogsGoal {
     }
   }
 
-  private void checkHealth(long deadLine) throws IOException {
+  private void checkHealth(
+      Map<String, Object> model, long deadLine, Set<String> targets, HealthEvents events)
+      throws IOException, MojoExecutionException {
     if (skipHealth) {
       return;
     }
-    Map<String, Object> model = readFile(composeFile);
     if (model.get("services") instanceof Map<?, ?> services) {
       Map<String, HealthCheck> healthChecks = readServices(services);
+      if (targets != null) {
+        healthChecks.keySet().retainAll(targets);
+      }
       if (!healthChecks.isEmpty()) {
-        runChecks(deadLine, healthChecks);
+        runChecks(deadLine, healthChecks, events);
       }
     }
   }
@@ -236,33 +434,75 @@ public class ComposeUp extends ComposeLogsGoal {
     return healthChecks;
   }
 
-  private void runChecks(long deadLine, Map<String, HealthCheck> checks) throws IOException {
+  private void runChecks(long deadLine, Map<String, HealthCheck> checks, HealthEvents events)
+      throws IOException, MojoExecutionException {
 
     healthLogPath = relativeToCurrentDirectory(healthLogs);
     Files.createDirectories(healthLogPath);
 
-    ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+    // the scheduler only starts processes, probes complete upon process exit
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    HealthHistory history = readHistory(checks);
     try {
-      runChecksProtected(deadLine, checks, executor);
+      runChecksProtected(
+          deadLine, checks, executor, new ProbeLimiter(healthConcurrency), events, history);
     } catch (InterruptedException ie) {
       Thread.currentThread().interrupt();
     } catch (ExecutionException ee) {
       getLog().warn(ee.getCause());
     } finally {
-      executor.shutdown();
+      // cancel probes which are not yet started
+      executor.shutdownNow();
+      writeHistory(history);
+    }
+  }
+
+  /** Read the learned time to healthy of the services, and apply it to their checks */
+  private HealthHistory readHistory(Map<String, HealthCheck> checks) {
+    if (!adaptiveHealth || started == 0 || localRepository == null) {
+      return null;
+    }
+    HealthHistory history =
+        HealthHistory.read(Path.of(localRepository, ".compose-health", project + ".yaml"));
+    // the learned time is measured from the start of the containers
+    checks.forEach((name, hc) -> hc.setEstimate(history.get(name)).setStartCheck(started));
+    return history;
+  }
+
+  private void writeHistory(HealthHistory history) {
+    if (history != null) {
+      try {
+        history.write();
+      } catch (IOException e) {
+        getLog().warn("Unable to save health history", e);
+      }
     }
   }
 
   private void runChecksProtected(
-      long deadLine, Map<String, HealthCheck> checks, ScheduledExecutorService executor)
-      throws InterruptedException, ExecutionException {
+      long deadLine,
+      Map<String, HealthCheck> checks,
+      ScheduledExecutorService executor,
+      ProbeLimiter limiter,
+      HealthEvents events,
+      HealthHistory history)
+      throws InterruptedException, ExecutionException, MojoExecutionException {
 
     BlockingQueue<Future<HealthCheck>> completionQueue = new LinkedBlockingQueue<>();
     List<String> failedHealthChecks = new ArrayList<>();
 
-    // prime health checks
-    checks.forEach(
-        (name, hc) -> completionQueue.add(hc.submit(executor, this::executeHealthCheck)));
+    if (events != null) {
+      // wake the checks upon failure
+      events.setFailureListener(() -> completionQueue.add(CompletableFuture.completedFuture(null)));
+    }
+    if (events != null && healthProbe == HealthProbe.EVENTS) {
+      primeFromEvents(checks, executor, limiter, events, completionQueue);
+    } else if (healthProbe == HealthProbe.INSPECT) {
+      pollServiceHealth(checks, executor, completionQueue);
+    } else {
+      // prime health checks
+      checks.forEach((name, hc) -> probe(hc, executor, limiter, completionQueue));
+    }
 
     while (!checks.isEmpty()) {
       long waitTime = deadLine - System.currentTimeMillis();
@@ -271,17 +511,26 @@ public class ComposeUp extends ComposeLogsGoal {
         break;
       }
 
+      if (events != null && events.getFailure() != null) {
+        throw new MojoExecutionException(events.getFailure());
+      }
       Future<HealthCheck> future = completionQueue.poll(waitTime, TimeUnit.MILLISECONDS);
       if (future != null) {
         HealthCheck healthCheck = future.get();
+        if (healthCheck == null) {
+          continue;
+        }
         getLog().debug(System.currentTimeMillis() + ": " + healthCheck);
 
         if (healthCheck.getHealthy() == null) {
-          completionQueue.add(healthCheck.submit(executor, this::executeHealthCheck));
-        } else {
-          checks.remove(healthCheck.getServiceName());
+          probe(healthCheck, executor, limiter, completionQueue);
+        } else if (checks.remove(healthCheck.getServiceName()) != null) {
           if (healthCheck.getHealthy() == Boolean.FALSE) {
             failedHealthChecks.add(healthCheck.getServiceName());
+          } else if (history != null) {
+            history.record(
+                healthCheck.getServiceName(),
+                System.currentTimeMillis() - healthCheck.getStartCheck());
           }
         }
       }
@@ -292,6 +541,83 @@ public class ComposeUp extends ComposeLogsGoal {
     }
   }
 
+  /**
+   * List the health of every container with one `ps` per tick, completing each check whose service
+   * is reported healthy or unhealthy. The tick is the shortest interval of the checks.
+   */
+  private void pollServiceHealth(
+      Map<String, HealthCheck> checks,
+      ScheduledExecutorService executor,
+      BlockingQueue<Future<HealthCheck>> completionQueue) {
+    Map<String, HealthCheck> byService = Map.copyOf(checks);
+    long tick =
+        byService.values().stream()
+            .mapToLong(hc -> hc.getStartPeriod() > 0 ? hc.getStartInterval() : hc.getInterval())
+            .min()
+            .orElse(HealthCheck.DEFAULT_INTERVAL);
+    CommandBuilder builder = createBuilder("ps").addOption("--format", "json").addOption("--all");
+    executor.scheduleWithFixedDelay(
+        () -> {
+          try {
+            String output = new ExecHelper(getLog()).outputAsString(builder);
+            ServiceHealth.parse(output)
+                .forEach(
+                    (service, healthy) -> {
+                      HealthCheck healthCheck = byService.get(service);
+                      if (healthCheck != null && healthCheck.report(healthy)) {
+                        completionQueue.add(CompletableFuture.completedFuture(healthCheck));
+                      }
+                    });
+          } catch (RuntimeException e) {
+            getLog().debug("Unable to list container health", e);
+          }
+        },
+        0,
+        Math.max(MINIMUM_TICK, tick),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Queue the probe once it completes, so that waiting never blocks upon a running probe */
+  private void probe(
+      HealthCheck healthCheck,
+      ScheduledExecutorService executor,
+      ProbeLimiter limiter,
+      BlockingQueue<Future<HealthCheck>> completionQueue) {
+    CompletableFuture<HealthCheck> future =
+        healthCheck.submit(executor, limiter, this::executeHealthCheck);
+    future.whenComplete((hc, e) -> completionQueue.add(future));
+  }
+
+  /**
+   * Complete each check when the engine reports the health of its service. Until the first report
+   * of a service arrives, its health test is also run with `exec`.
+   */
+  private void primeFromEvents(
+      Map<String, HealthCheck> checks,
+      ScheduledExecutorService executor,
+      ProbeLimiter limiter,
+      HealthEvents events,
+      BlockingQueue<Future<HealthCheck>> completionQueue) {
+    Map<String, HealthCheck> byService = Map.copyOf(checks);
+    events.setListener(
+        (service, healthy) -> {
+          HealthCheck healthCheck = byService.get(service);
+          if (healthCheck != null && healthCheck.report(healthy)) {
+            completionQueue.add(CompletableFuture.completedFuture(healthCheck));
+          }
+        });
+    byService.forEach(
+        (name, hc) -> {
+          Boolean healthy = events.getStatus(name);
+          if (healthy != null && hc.report(healthy)) {
+            completionQueue.add(CompletableFuture.completedFuture(hc));
+          } else {
+            // a reported check completes its pending probe without running it
+            probe(hc, executor, limiter, completionQueue);
+          }
+        });
+  }
+
   private Process executeHealthCheck(HealthCheck healthCheck) throws IOException {
     String serviceName = healthCheck.getServiceName();
 
@@ -322,10 +648,40 @@ public class ComposeUp extends ComposeLogsGoal {
     return createProcess(command, trace);
   }
 
-  private Process startEventWatcher(CommandBuilder builder) throws IOException {
+  private Process startEventWatcher(CommandBuilder builder, HealthEvents events)
+      throws IOException {
     Path logPath = createLogDir();
     Path logFile = logPath.resolve("compose-events.log");
-    return createProcess(builder.getCommand(), logFile);
+    if (events == null) {
+      return createProcess(builder.getCommand(), logFile);
+    }
+
+    ProcessBuilder processBuilder = new ProcessBuilder(builder.getCommand());
+    processBuilder.directory(composeProject.toFile());
+    processBuilder.redirectError(Redirect.appendTo(logFile.toFile()));
+    Process process = processBuilder.start();
+    process.getOutputStream().close();
+
+    // copy each event to the log, then parse the event
+    Thread pump =
+        new Thread(
+            () -> {
+              try (BufferedReader reader = process.inputReader(StandardCharsets.UTF_8);
+                  Writer writer =
+                      Files.newBufferedWriter(
+                          logFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String line; (line = reader.readLine()) != null; ) {
+                  writer.append(line).append('\n').flush();
+                  events.accept(line);
+                }
+              } catch (IOException e) {
+                getLog().debug("Stopped reading compose events", e);
+              }
+            },
+            "compose-events");
+    pump.setDaemon(true);
+    pump.start();
+    return process;
   }
 
   private Process createProcess(List<String> command, Path output) throws IOException {
@@ -339,11 +695,56 @@ public class ComposeUp extends ComposeLogsGoal {
     return process;
   }
 
-  private void assignMavenVariable(PortInfo portInfo) {
+  private String hostPort(PortInfo portInfo) {
     CommandBuilder builder = createBuilder("port");
     builder.addOption(portInfo.getService(), portInfo.getContainer());
     String port = new ExecHelper(this.getLog()).outputAsString(builder).strip();
-    port = port.substring(port.lastIndexOf(':') + 1);
+    return port.substring(port.lastIndexOf(':') + 1);
+  }
+
+  /** Probe the published ports of services which do not have a health check */
+  private void checkReadiness(Map<String, Object> model, long deadLine, Set<String> targets)
+      throws IOException {
+    if (!readiness || skipHealth) {
+      return;
+    }
+    Set<String> checked =
+        model.get("services") instanceof Map<?, ?> services
+            ? readServices(services).keySet()
+            : Set.of();
+    List<ReadinessProbe.Target> probes = new ArrayList<>();
+    Set<String> notReady = new TreeSet<>();
+    for (PortInfo portInfo : portInfos) {
+      String service = portInfo.getService();
+      if (checked.contains(service) || targets != null && !targets.contains(service)) {
+        continue;
+      }
+      int port;
+      try {
+        port = Integer.parseInt(hostPort(portInfo));
+      } catch (NumberFormatException | IllegalStateException e) {
+        // the container port is not published, or `compose port` failed
+        getLog().debug("No host port for " + portInfo.getProperty(), e);
+        notReady.add(portInfo.getProperty());
+        continue;
+      }
+      String path = readinessPaths != null ? readinessPaths.get(portInfo.getProperty()) : null;
+      probes.add(
+          new ReadinessProbe.Target(
+              portInfo.getProperty(),
+              new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+              path != null ? URI.create("http://localhost:" + port + path) : null));
+    }
+    if (!probes.isEmpty()) {
+      notReady.addAll(new ReadinessProbe().await(probes, deadLine));
+    }
+    if (!notReady.isEmpty()) {
+      getLog().warn("Readiness probes failed for ports " + notReady);
+    }
+  }
+
+  private void assignMavenVariable(PortInfo portInfo) {
+    String port = hostPort(portInfo);
     getLog().info("Setting " + portInfo.getProperty() + " to " + port);
     userProperties.put(portInfo.getProperty(), port);
   }
@@ -361,4 +762,11 @@ public class ComposeUp extends ComposeLogsGoal {
       }
     }
   }
+
+  /** Health detection strategies */
+  public enum HealthProbe {
+    EVENTS,
+    EXEC,
+    INSPECT
+  }
 }
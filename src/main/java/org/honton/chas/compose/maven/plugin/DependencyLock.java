@@ -0,0 +1,190 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.artifact.Artifact;
+import org.honton.chas.compose.maven.plugin.DependencyResolver.Resolved;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+/**
+ * The resolved transitive compose dependency graph, flattened in extraction order. A lock which
+ * matches the declared dependencies is fetched with a single resolution request, without walking
+ * the graph.
+ */
+@Data
+@Accessors(chain = true)
+public class DependencyLock {
+
+  private static final String DEPENDENCIES = "dependencies";
+  private static final String ARTIFACTS = "artifacts";
+
+  /** coordinates of the declared dependencies */
+  private List<String> dependencies = new ArrayList<>();
+
+  /** chosen artifacts, dependencies before their dependents */
+  private List<Locked> artifacts = new ArrayList<>();
+
+  /**
+   * Create the lock of a resolved graph
+   *
+   * @param artifactHelper Reads the dependencies of snapshots
+   * @param roots The declared dependencies
+   * @param resolved The resolved graph, in extraction order
+   * @return The lock
+   */
+  static DependencyLock of(
+      ArtifactHelper artifactHelper, List<Artifact> roots, List<Resolved> resolved)
+      throws IOException {
+    DependencyLock lock =
+        new DependencyLock().setDependencies(roots.stream().map(Artifact::toString).toList());
+    for (Resolved artifact : resolved) {
+      Locked locked =
+          new Locked()
+              .setGav(artifact.artifact().toString())
+              .setSha256(HashHelper.sha256(artifact.file().toPath()));
+      if (artifact.artifact().isSnapshot()) {
+        locked.setDependencies(artifactHelper.readJar(artifact.file()).dependencies());
+      }
+      lock.artifacts.add(locked);
+    }
+    return lock;
+  }
+
+  /**
+   * Read a lock file
+   *
+   * @param path The lock file
+   * @return The lock, or null if the file does not exist
+   */
+  static DependencyLock read(Path path) throws IOException {
+    if (!Files.isReadable(path)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      Map<String, Object> map = new Yaml(new SafeConstructor(new LoaderOptions())).load(reader);
+      return map != null ? fromMap(map) : null;
+    }
+  }
+
+  public static DependencyLock fromMap(Map<String, Object> map) {
+    DependencyLock lock =
+        new DependencyLock()
+            .setDependencies((List<String>) map.getOrDefault(DEPENDENCIES, List.of()));
+    if (map.get(ARTIFACTS) instanceof List<?> artifacts) {
+      artifacts.forEach(a -> lock.artifacts.add(Locked.fromMap((Map<String, Object>) a)));
+    }
+    return lock;
+  }
+
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put(DEPENDENCIES, dependencies);
+    map.put(ARTIFACTS, artifacts.stream().map(Locked::toMap).toList());
+    return map;
+  }
+
+  /**
+   * Write the lock file
+   *
+   * @param path The lock file
+   */
+  void write(Path path) throws IOException {
+    DumperOptions options = new DumperOptions();
+    options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+    try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      new Yaml(options).dump(toMap(), writer);
+    }
+  }
+
+  /**
+   * Fetch the locked artifacts with a single request, verifying their checksums. Snapshot checksums
+   * are not verified, since snapshots are rebuilt; instead, the dependencies of each snapshot must
+   * match the lock.
+   *
+   * @param artifactHelper Fetches the artifacts
+   * @param roots The declared dependencies
+   * @param log Reports why the lock is not used
+   * @return The resolved graph, or null if the lock does not match the declared dependencies or the
+   *     fetched artifacts
+   */
+  List<Resolved> resolve(ArtifactHelper artifactHelper, List<Artifact> roots, Log log)
+      throws IOException, MojoExecutionException, RepositoryException {
+    if (!dependencies.equals(roots.stream().map(Artifact::toString).toList())) {
+      log.warn("Dependency lock does not match the declared dependencies, resolving graph");
+      return null;
+    }
+    List<Artifact> locked =
+        artifacts.stream().map(a -> (Artifact) ArtifactHelper.composeArtifact(a.gav)).toList();
+    List<File> files = artifactHelper.fetchArtifacts(locked);
+    List<Resolved> resolved = new ArrayList<>(locked.size());
+    for (int i = 0; i < locked.size(); ++i) {
+      Artifact artifact = locked.get(i);
+      File file = files.get(i);
+      Locked lockedArtifact = artifacts.get(i);
+      if (artifact.isSnapshot()) {
+        if (!artifactHelper.readJar(file).dependencies().equals(lockedArtifact.dependencies)) {
+          log.warn(
+              "Dependencies of " + artifact + " do not match dependency lock, resolving graph");
+          return null;
+        }
+      } else if (!lockedArtifact.sha256.equals(HashHelper.sha256(file.toPath()))) {
+        log.warn("Checksum of " + artifact + " does not match dependency lock, resolving graph");
+        return null;
+      }
+      resolved.add(new Resolved(artifact, file));
+    }
+    return resolved;
+  }
+
+  /** A chosen artifact */
+  @Data
+  @Accessors(chain = true)
+  public static class Locked {
+    private static final String GAV = "gav";
+    private static final String SHA256 = "sha256";
+    private static final String DEPENDENCIES = "dependencies";
+
+    /** coordinates, with the chosen version */
+    private String gav;
+
+    /** hex SHA-256 of the artifact */
+    private String sha256;
+
+    /** direct dependencies of a snapshot, as declared in its manifest */
+    private List<String> dependencies;
+
+    public static Locked fromMap(Map<String, Object> map) {
+      return new Locked()
+          .setGav((String) map.get(GAV))
+          .setSha256((String) map.get(SHA256))
+          .setDependencies((List<String>) map.get(DEPENDENCIES));
+    }
+
+    public Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put(GAV, gav);
+      map.put(SHA256, sha256);
+      if (dependencies != null) {
+        map.put(DEPENDENCIES, dependencies);
+      }
+      return map;
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.RequiredArgsConstructor;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.artifact.Artifact;
+
+/**
+ * Breadth first resolution of the transitive compose dependency graph. Each frontier of the graph
+ * is de-duplicated by artifact key, with the highest version chosen before any fetching. The
+ * frontier is then fetched with a single batched resolution request, and the manifests of the
+ * fetched jars are read concurrently to discover the next frontier.
+ */
+@RequiredArgsConstructor
+class DependencyResolver {
+
+  private final ArtifactHelper artifactHelper;
+  private final Log log;
+  private final int threads;
+
+  // artifact key -> artifact with chosen version
+  private final Map<String, Artifact> chosen = new HashMap<>();
+  // gav -> resolved file
+  private final Map<String, File> files = new HashMap<>();
+  // gav -> direct dependencies
+  private final Map<String, List<Artifact>> dependencies = new HashMap<>();
+
+  private static String key(Artifact artifact) {
+    String gav = artifact.toString();
+    return gav.substring(0, gav.lastIndexOf(':'));
+  }
+
+  private List<Artifact> readDependencies(File file) throws IOException {
+    List<Artifact> dependencies = new ArrayList<>();
+    for (String dependency : artifactHelper.readJar(file).dependencies()) {
+      dependencies.add(ArtifactHelper.composeArtifact(dependency));
+    }
+    return dependencies;
+  }
+
+  /**
+   * Resolve the transitive closure of the root artifacts.
+   *
+   * @param roots The direct dependencies
+   * @return The chosen artifacts, dependencies ordered before their dependents
+   */
+  List<Resolved> resolve(List<Artifact> roots)
+      throws IOException, MojoExecutionException, RepositoryException {
+    if (!roots.isEmpty()) {
+      ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+      try {
+        Collection<Artifact> frontier = roots;
+        while (!frontier.isEmpty()) {
+          frontier = nextFrontier(executor, choose(frontier));
+        }
+      } finally {
+        executor.shutdown();
+      }
+    }
+    return extractionOrder(roots);
+  }
+
+  /** Choose the highest version of each artifact key, returning those which need fetching */
+  private List<Artifact> choose(Collection<Artifact> frontier) {
+    Map<String, Artifact> candidates = new LinkedHashMap<>();
+    for (Artifact artifact : frontier) {
+      candidates.merge(key(artifact), artifact, this::higher);
+    }
+
+    List<Artifact> toFetch = new ArrayList<>();
+    candidates.forEach(
+        (key, artifact) -> {
+          Artifact prior = chosen.get(key);
+          if (prior == null) {
+            log.debug("adding dependency " + key);
+          } else if (higher(prior, artifact) == prior) {
+            return;
+          } else {
+            log.info("Replacing artifact " + prior + " with version " + artifact.getVersion());
+          }
+          chosen.put(key, artifact);
+          if (!files.containsKey(artifact.toString())) {
+            toFetch.add(artifact);
+          }
+        });
+    return toFetch;
+  }
+
+  private Artifact higher(Artifact current, Artifact candidate) {
+    if (current.getVersion().equals(candidate.getVersion())) {
+      log.debug("Ignoring duplicate artifact " + candidate);
+      return current;
+    }
+    int compare =
+        SemVer.valueOf(candidate.getVersion()).compareTo(SemVer.valueOf(current.getVersion()));
+    if (compare <= 0) {
+      log.info("Ignoring lesser artifact " + candidate + ", using version " + current.getVersion());
+      return current;
+    }
+    return candidate;
+  }
+
+  /** Fetch the artifacts as a batch, and read their manifests to find the next frontier */
+  private List<Artifact> nextFrontier(ExecutorService executor, List<Artifact> toFetch)
+      throws IOException, MojoExecutionException, RepositoryException {
+    if (toFetch.isEmpty()) {
+      return List.of();
+    }
+    List<File> fetched = artifactHelper.fetchArtifacts(toFetch);
+
+    List<Future<List<Artifact>>> futures = new ArrayList<>(toFetch.size());
+    for (File file : fetched) {
+      Callable<List<Artifact>> reader = () -> readDependencies(file);
+      futures.add(executor.submit(reader));
+    }
+
+    List<Artifact> next = new ArrayList<>();
+    for (int i = 0; i < futures.size(); ++i) {
+      String gav = toFetch.get(i).toString();
+      List<Artifact> direct = FutureHelper.await(futures.get(i));
+      files.put(gav, fetched.get(i));
+      dependencies.put(gav, direct);
+      next.addAll(direct);
+    }
+    return next;
+  }
+
+  /** Depth first walk of the chosen graph; each dependency precedes its dependents */
+  private List<Resolved> extractionOrder(List<Artifact> roots) {
+    List<Resolved> order = new ArrayList<>();
+    Set<String> visited = new HashSet<>();
+    for (Artifact root : roots) {
+      visit(root, visited, order);
+    }
+    return order;
+  }
+
+  private void visit(Artifact artifact, Set<String> visited, List<Resolved> order) {
+    String key = key(artifact);
+    if (visited.add(key)) {
+      Artifact selected = chosen.get(key);
+      String gav = selected.toString();
+      for (Artifact dependency : dependencies.get(gav)) {
+        visit(dependency, visited, order);
+      }
+      order.add(new Resolved(selected, files.get(gav)));
+    }
+  }
+
+  record Resolved(Artifact artifact, File file) {}
+}
@@ -12,6 +12,7 @@ import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -25,10 +26,14 @@ public class ExecHelper {
   private static final Pattern ERROR =
       Pattern.compile("\\[?(error)]?:? ?(.+)", Pattern.CASE_INSENSITIVE);
 
+  // interval between checks for abort while waiting
+  private static final long ABORT_POLL = 250L;
+
   private final ExecutorCompletionService<Object> completionService;
   private final Sink debugLine;
   private final Sink infoLine;
   private final Sink errorLine;
+  private Process process;
 
   public ExecHelper(Log log) {
 
@@ -80,7 +85,7 @@ public class ExecHelper {
       } else {
         debugLine.accept(cmdLine);
       }
-      Process process = processBuilder.start();
+      process = processBuilder.start();
       startPump(process.getInputStream(), stdout);
       startPump(process.getErrorStream(), errorLine);
       completionService.submit(process::waitFor);
@@ -116,16 +121,26 @@ public class ExecHelper {
   }
 
   private String waitForResult(long deadLine) {
+    return waitForResult(deadLine, () -> null);
+  }
+
+  private String waitForResult(long deadLine, Supplier<String> abort) {
     long timeToGo = Math.max(1L, deadLine - System.currentTimeMillis());
     try {
       do {
-        Future<Object> poll = completionService.poll(timeToGo, TimeUnit.MILLISECONDS);
+        Future<Object> poll =
+            completionService.poll(Math.min(timeToGo, ABORT_POLL), TimeUnit.MILLISECONDS);
         if (poll != null) {
           Object taskExit = poll.get();
           if (taskExit instanceof Integer exit) {
             return exit != 0 ? "command exited with code " + exit : null;
           }
         }
+        String aborted = abort.get();
+        if (aborted != null) {
+          process.destroy();
+          return aborted;
+        }
         timeToGo = deadLine - System.currentTimeMillis();
       } while (timeToGo > 0);
       return "timed out";
@@ -157,7 +172,17 @@ public class ExecHelper {
   }
 
   public void waitForExit(long deadLine) throws MojoExecutionException {
-    String message = waitForResult(deadLine);
+    waitForExit(deadLine, () -> null);
+  }
+
+  /**
+   * Wait for the command to exit, unless aborted
+   *
+   * @param deadLine Time at which waiting fails
+   * @param abort Supplies the reason to abort, or null to continue waiting
+   */
+  public void waitForExit(long deadLine, Supplier<String> abort) throws MojoExecutionException {
+    String message = waitForResult(deadLine, abort);
     if (message != null) {
       throw new MojoExecutionException(message);
     }
@@ -0,0 +1,164 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import org.eclipse.aether.artifact.Artifact;
+
+/**
+ * Cache of the extracted entries of released compose artifacts. Each jar is extracted once into a
+ * directory named by the hash of its coordinates, size, and last modified time; the jar content is
+ * not hashed, since a released artifact is immutable once in the local repository. Compose files
+ * are then hard linked into each compose project; other entries may be bind mounted into a
+ * container, and are copied. On file systems with posix permissions, the cached entries are
+ * read-only, so that a write through a link fails rather than changing the cache of every project.
+ */
+class ExtractionCache {
+
+  /** names of the entries which hold a placeholder, one per line */
+  private static final String PLACEHOLDERS = ".placeholders";
+
+  private final Path root;
+  private final boolean links;
+
+  ExtractionCache(Path root) {
+    this.root = root;
+    // a read-only file cannot be deleted on windows
+    links = root.getFileSystem().supportedFileAttributeViews().contains("posix");
+  }
+
+  private static void deleteTree(Path directory) throws IOException {
+    try (Stream<Path> walk = Files.walk(directory)) {
+      for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  private static void populate(File jar, Path directory, boolean readOnly) throws IOException {
+    List<String> placeholders = new ArrayList<>();
+    try (JarFile jarFile = new JarFile(jar, false)) {
+      Enumeration<JarEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        JarEntry entry = entries.nextElement();
+        if (entry.isDirectory()) {
+          continue;
+        }
+        Path target = directory.resolve(entry.getName()).normalize();
+        if (!target.startsWith(directory)) {
+          throw new IOException("entry " + entry.getName() + " is outside of " + jar);
+        }
+        Files.createDirectories(target.getParent());
+        try (PlaceholderScanner scanner = new PlaceholderScanner(jarFile.getInputStream(entry))) {
+          Files.copy(scanner, target);
+          if (readOnly && !target.toFile().setReadOnly()) {
+            throw new IOException("unable to make " + target + " read-only");
+          }
+          if (scanner.isFilterable()) {
+            placeholders.add(entry.getName());
+          }
+        }
+      }
+    }
+    Files.write(directory.resolve(PLACEHOLDERS), placeholders);
+  }
+
+  /**
+   * The name of the directory which holds the extraction of a jar
+   *
+   * @param artifact The released compose artifact
+   * @param jar The local file of the artifact
+   * @return The hash of the coordinates, size, and last modified time of the jar
+   */
+  static String key(Artifact artifact, File jar) {
+    MessageDigest digest = HashHelper.newDigest();
+    HashHelper.update(digest, artifact.toString());
+    HashHelper.update(digest, Long.toString(jar.length()));
+    HashHelper.update(digest, Long.toString(jar.lastModified()));
+    return HashHelper.hex(digest);
+  }
+
+  /**
+   * Get the cached extraction of a jar, extracting the jar if not already cached
+   *
+   * @param artifact The released compose artifact
+   * @param jar The local file of the artifact
+   * @return The cached extraction
+   */
+  CachedArtifact extract(Artifact artifact, File jar) throws IOException {
+    Path directory = root.resolve(key(artifact, jar));
+    if (!Files.isDirectory(directory)) {
+      Files.createDirectories(root);
+      Path temporary = Files.createTempDirectory(root, directory.getFileName() + "-");
+      try {
+        populate(jar, temporary, links);
+        Files.move(temporary, directory, StandardCopyOption.ATOMIC_MOVE);
+      } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+        // another build populated the cache concurrently
+        deleteTree(temporary);
+      } catch (IOException e) {
+        deleteTree(temporary);
+        throw e;
+      }
+    }
+    return new CachedArtifact(
+        directory, Set.copyOf(Files.readAllLines(directory.resolve(PLACEHOLDERS))), links);
+  }
+
+  /**
+   * The extracted entries of a jar
+   *
+   * @param directory The directory holding the entries
+   * @param placeholders The names of entries which hold a placeholder
+   * @param links true, if entries are read-only and may be hard linked
+   */
+  record CachedArtifact(Path directory, Set<String> placeholders, boolean links) {
+
+    /**
+     * Hard link an entry to the destination, or copy the entry if a link cannot be made. Writers of
+     * the destination must delete the link before writing.
+     *
+     * @param name The name of the entry
+     * @param destination The location of the link
+     */
+    void linkTo(String name, Path destination) throws IOException {
+      if (links) {
+        Files.deleteIfExists(destination);
+        try {
+          Files.createLink(destination, directory.resolve(name));
+          return;
+        } catch (IOException | UnsupportedOperationException ignored) {
+          // copy instead
+        }
+      }
+      copyTo(name, destination);
+    }
+
+    /**
+     * Copy an entry to the destination, as a writable file
+     *
+     * @param name The name of the entry
+     * @param destination The location of the copy
+     */
+    void copyTo(String name, Path destination) throws IOException {
+      Files.deleteIfExists(destination);
+      Files.copy(directory.resolve(name), destination);
+      if (!destination.toFile().setWritable(true)) {
+        throw new IOException("unable to make " + destination + " writable");
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Bounded pool of workers which extract the entries of compose artifacts. Entries are submitted in
+ * link order; the submitter blocks when too many entries are in flight. Each ordered task receives
+ * a {@link Turn} which serializes the stage that must observe link order, while reading,
+ * interpolating, parsing, and writing proceed concurrently.
+ */
+class ExtractionPipeline implements Closeable {
+
+  private static final Turn UNORDERED = new Turn(CompletableFuture.completedFuture(null));
+
+  private final ExecutorService executor;
+  private final Semaphore inFlight;
+  private final List<Future<Void>> pending = new ArrayList<>();
+  private final Map<Path, Future<Void>> destinations = new HashMap<>();
+  private final List<Closeable> resources = new ArrayList<>();
+  private CompletableFuture<Void> lastTurn = CompletableFuture.completedFuture(null);
+
+  ExtractionPipeline(int threads) {
+    int workers = Math.max(1, threads);
+    executor = Executors.newFixedThreadPool(workers);
+    inFlight = new Semaphore(workers * 2);
+  }
+
+  /**
+   * Keep a resource open until the pipeline is closed
+   *
+   * @param resource The resource used by submitted tasks
+   * @return The resource
+   */
+  <T extends Closeable> T keepOpen(T resource) {
+    resources.add(resource);
+    return resource;
+  }
+
+  private static IOException interrupted(InterruptedException e) {
+    Thread.currentThread().interrupt();
+    return new IOException("interrupted", e);
+  }
+
+  /**
+   * Submit a task, blocking while the pipeline is full
+   *
+   * @param destination The file written by the task; a prior task writing the same file completes
+   *     before this task is submitted
+   * @param ordered true, if the task's turn follows the turn of the prior ordered task
+   * @param task The task
+   */
+  void submit(Path destination, boolean ordered, Task task) throws IOException {
+    Future<Void> prior = destinations.get(destination);
+    if (prior != null) {
+      try {
+        prior.get();
+      } catch (InterruptedException e) {
+        throw interrupted(e);
+      } catch (ExecutionException ignored) {
+        // reported by await
+      }
+    }
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      throw interrupted(e);
+    }
+    Turn turn;
+    if (ordered) {
+      turn = new Turn(lastTurn);
+      lastTurn = turn.done;
+    } else {
+      turn = UNORDERED;
+    }
+    Future<Void> future =
+        executor.submit(
+            () -> {
+              try {
+                task.run(turn);
+                return null;
+              } finally {
+                turn.release();
+                inFlight.release();
+              }
+            });
+    pending.add(future);
+    destinations.put(destination, future);
+  }
+
+  /** Wait for all submitted tasks, rethrowing the first failure in submission order */
+  void await() throws IOException, MojoExecutionException {
+    for (Future<Void> future : pending) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        throw interrupted(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException ioe) {
+          throw ioe;
+        }
+        if (cause instanceof MojoExecutionException mee) {
+          throw mee;
+        }
+        if (cause instanceof RuntimeException re) {
+          throw re;
+        }
+        throw new IOException(cause.getMessage(), cause);
+      }
+    }
+    pending.clear();
+    destinations.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    IOException failure = null;
+    for (Closeable resource : resources) {
+      try {
+        resource.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @FunctionalInterface
+  interface Task {
+    void run(Turn turn) throws IOException;
+  }
+
+  /** The ordered stage of a task */
+  static class Turn {
+    private final CompletableFuture<Void> prior;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private Turn(CompletableFuture<Void> prior) {
+      this.prior = prior;
+    }
+
+    /** Wait until all prior ordered tasks have released their turn */
+    void await() {
+      prior.join();
+    }
+
+    /** Allow the next ordered task to proceed */
+    void release() {
+      done.complete(null);
+    }
+  }
+}
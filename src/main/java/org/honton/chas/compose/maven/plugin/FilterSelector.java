@@ -0,0 +1,45 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+
+/**
+ * Selects entries by name, such as the linked entries which are interpolated. Patterns use {@link
+ * PathMatcher} glob syntax and are matched against the entry path.
+ */
+class FilterSelector {
+
+  private final List<PathMatcher> includes;
+  private final List<PathMatcher> excludes;
+
+  /**
+   * Create a selector
+   *
+   * @param includes Patterns of entries to select; if empty, all entries are selected
+   * @param excludes Patterns of entries not to select
+   */
+  FilterSelector(List<String> includes, List<String> excludes) {
+    this.includes = matchers(includes);
+    this.excludes = matchers(excludes);
+  }
+
+  private static List<PathMatcher> matchers(List<String> patterns) {
+    if (patterns == null) {
+      return List.of();
+    }
+    FileSystem fileSystem = FileSystems.getDefault();
+    return patterns.stream().map(pattern -> fileSystem.getPathMatcher("glob:" + pattern)).toList();
+  }
+
+  private static boolean anyMatch(List<PathMatcher> matchers, Path path) {
+    return matchers.stream().anyMatch(matcher -> matcher.matches(path));
+  }
+
+  boolean matches(String name) {
+    Path path = Path.of(name);
+    return (includes.isEmpty() || anyMatch(includes, path)) && !anyMatch(excludes, path);
+  }
+}
@@ -0,0 +1,87 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.codehaus.plexus.interpolation.BasicInterpolator;
+import org.codehaus.plexus.interpolation.InterpolationException;
+
+/**
+ * Content compiled into alternating literals and placeholders. Placeholders are split exactly as
+ * {@link org.codehaus.plexus.interpolation.InterpolatorFilterReader} splits its input: from a
+ * {@code $} through the next {@code }}. Each placeholder is handed to the interpolator as is, so
+ * escaped expressions are treated identically.
+ */
+final class FilterTemplate {
+
+  // literals.length == placeholders.length + 1
+  private final String[] literals;
+  private final String[] placeholders;
+
+  private FilterTemplate(String[] literals, String[] placeholders) {
+    this.literals = literals;
+    this.placeholders = placeholders;
+  }
+
+  /**
+   * Compile the content
+   *
+   * @param content The text to filter
+   * @return The template
+   */
+  static FilterTemplate compile(String content) {
+    List<String> literals = new ArrayList<>();
+    List<String> placeholders = new ArrayList<>();
+    int literalStart = 0;
+    int end = -1;
+    for (int start; (start = content.indexOf('$', end + 1)) >= 0; ) {
+      end = content.indexOf('}', start + 1);
+      if (end < 0) {
+        break;
+      }
+      // without an expression start, the interpolator returns the placeholder unchanged
+      int expression = content.indexOf("${", start);
+      if (expression >= 0 && expression < end) {
+        literals.add(content.substring(literalStart, start));
+        placeholders.add(content.substring(start, end + 1));
+        literalStart = end + 1;
+      }
+    }
+    literals.add(content.substring(literalStart));
+    return new FilterTemplate(literals.toArray(String[]::new), placeholders.toArray(String[]::new));
+  }
+
+  /**
+   * Write the content with each placeholder interpolated
+   *
+   * @param interpolator Interpolator of the placeholders
+   * @param out Destination of the filtered content
+   */
+  void render(BasicInterpolator interpolator, Appendable out) throws IOException {
+    out.append(literals[0]);
+    for (int i = 0; i < placeholders.length; ++i) {
+      try {
+        out.append(interpolator.interpolate(placeholders[i]));
+      } catch (InterpolationException e) {
+        throw new IllegalArgumentException(e.getMessage(), e);
+      }
+      out.append(literals[i + 1]);
+    }
+  }
+
+  /**
+   * Filter the content
+   *
+   * @param interpolator Interpolator of the placeholders
+   * @return The filtered content
+   */
+  String render(BasicInterpolator interpolator) {
+    StringBuilder sb = new StringBuilder();
+    try {
+      render(interpolator, sb);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,32 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import lombok.experimental.UtilityClass;
+
+/** Waiting upon background work */
+@UtilityClass
+class FutureHelper {
+
+  /**
+   * Wait for the result of background work
+   *
+   * @param future The background work
+   * @return The result
+   * @throws IOException The failure of the work, or interruption of the wait
+   */
+  <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioe) {
+        throw ioe;
+      }
+      throw new IOException(e.getCause().getMessage(), e.getCause());
+    }
+  }
+}
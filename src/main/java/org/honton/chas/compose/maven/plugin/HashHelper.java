@@ -0,0 +1,48 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import lombok.experimental.UtilityClass;
+
+/** SHA-256 digests of files and strings */
+@UtilityClass
+public class HashHelper {
+
+  public MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public String hex(MessageDigest digest) {
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  public void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  public void update(MessageDigest digest, InputStream is) throws IOException {
+    byte[] buffer = new byte[8192];
+    for (int read; (read = is.read(buffer)) >= 0; ) {
+      digest.update(buffer, 0, read);
+    }
+  }
+
+  public String sha256(Path path) throws IOException {
+    MessageDigest digest = newDigest();
+    try (InputStream is = Files.newInputStream(path)) {
+      update(digest, is);
+    }
+    return hex(digest);
+  }
+}
@@ -3,10 +3,9 @@ package org.honton.chas.compose.maven.plugin;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import lombok.Data;
 import lombok.experimental.Accessors;
@@ -17,9 +16,14 @@ import org.honton.chas.compose.maven.plugin.duration.DurationParser;
 public class HealthCheck {
 
   private static final long DEFAULT_DURATION = TimeUnit.SECONDS.toMillis(30);
-  private static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+  static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(5);
   private static final int DEFAULT_RETRIES = 3;
 
+  // narrowest window of dense probes around the expected time to healthy
+  private static final long MINIMUM_SPREAD = 250L;
+  // shortest time between adaptive probes
+  private static final long MINIMUM_GAP = 100L;
+
   private String serviceName;
 
   /** The command Compose runs to check container health */
@@ -56,12 +60,18 @@ public class HealthCheck {
 
   private Boolean healthy;
 
-  // time of the first health check
+  // origin of the probe schedule and the time to healthy; the first probe, unless set earlier
   private long startCheck;
 
   // duration after startCheck for next health check
   private long nextCheck;
 
+  /** Learned time to healthy; if set, probes are dense around the expected time */
+  private HealthHistory.Estimate estimate;
+
+  // previous adaptive gap between probes
+  private long adaptiveGap;
+
   public static HealthCheck fromMap(String serviceName, Map<String, Object> map) {
     return new HealthCheck()
         .setServiceName(serviceName)
@@ -107,8 +117,17 @@ public class HealthCheck {
     return defaultValue;
   }
 
-  /** https://docs.docker.com/reference/dockerfile/#healthcheck */
-  public Future<HealthCheck> submit(ScheduledExecutorService executor, CmdLineRunner runner) {
+  /**
+   * Schedule the next probe, following the cadence of this check.
+   * https://docs.docker.com/reference/dockerfile/#healthcheck
+   *
+   * @param scheduler Timer of probes; tasks only start processes and do not block
+   * @param limiter Bounds the number of concurrent probes
+   * @param runner Starts the probe process
+   * @return Future which completes once the probe has exited or timed out
+   */
+  public CompletableFuture<HealthCheck> submit(
+      ScheduledExecutorService scheduler, ProbeLimiter limiter, CmdLineRunner runner) {
     synchronized (this) {
       if (healthy != null) {
         return CompletableFuture.completedFuture(this);
@@ -116,60 +135,134 @@ public class HealthCheck {
 
       if (retries == 0) {
         healthy = Boolean.FALSE;
-        CompletableFuture<HealthCheck> future = new CompletableFuture<>();
-        future.complete(this);
-        return future;
+        return CompletableFuture.completedFuture(this);
       }
 
       long now = System.currentTimeMillis();
-      final long delay;
       if (nextCheck == 0) {
-        startCheck = now;
-        delay = 0;
-      } else {
-        delay = startCheck + nextCheck - now;
+        if (startCheck == 0) {
+          startCheck = now;
+        }
+        if (estimate != null) {
+          // the first probe already approaches the expected time to healthy
+          adaptiveGap = adaptiveGap();
+          nextCheck = adaptiveGap;
+        }
       }
+      long delay = startCheck + nextCheck - now;
 
-      Callable<HealthCheck> healthCheckCallable = () -> executeCmd(runner);
-      final Future<HealthCheck> future;
+      CompletableFuture<HealthCheck> future = new CompletableFuture<>();
+      Runnable launch = () -> limiter.launch(() -> executeCmd(runner, limiter, future));
       if (delay > 0) {
-        future = executor.schedule(healthCheckCallable, delay, TimeUnit.MILLISECONDS);
+        scheduler.schedule(launch, delay, TimeUnit.MILLISECONDS);
       } else {
-        future = executor.submit(healthCheckCallable);
+        scheduler.execute(launch);
       }
 
-      if (startPeriod > 0 && nextCheck < startPeriod) {
-        nextCheck += startInterval;
-      } else {
-        nextCheck += interval;
+      advance();
+      return future;
+    }
+  }
+
+  private void advance() {
+    long gap = estimate != null ? adaptiveGap() : 0;
+    if (gap > 0) {
+      // like the fixed cadence, probes after the learned window and start period count as retries
+      if (nextCheck >= windowEnd() && nextCheck >= startPeriod) {
         retries--;
       }
+      adaptiveGap = gap;
+      nextCheck += gap;
+    } else if (startPeriod > 0 && nextCheck < startPeriod) {
+      nextCheck += startInterval;
+    } else {
+      nextCheck += interval;
+      retries--;
+    }
+  }
 
-      return future;
+  /**
+   * Gap to the next probe: doubling toward the window around the expected time to healthy, dense
+   * within the window, and a jittered exponential backoff after the window.
+   *
+   * @return The gap, or 0 once the backoff reaches the interval
+   */
+  private long spread() {
+    return Math.max(2 * estimate.deviation(), MINIMUM_SPREAD);
+  }
+
+  private long windowEnd() {
+    return estimate.expected() + spread();
+  }
+
+  private long adaptiveGap() {
+    long windowStart = Math.max(0, estimate.expected() - spread());
+    long windowEnd = windowEnd();
+    long denseGap = Math.min(interval, Math.max(MINIMUM_GAP, (windowEnd - windowStart) / 8));
+    if (nextCheck < windowStart) {
+      long approach = Math.min(windowStart - nextCheck, Math.max(nextCheck, windowStart / 8));
+      return Math.min(interval, Math.max(denseGap, approach));
+    }
+    if (nextCheck < windowEnd) {
+      return denseGap;
     }
+    long backoff = 2 * Math.max(denseGap, adaptiveGap);
+    backoff += ThreadLocalRandom.current().nextLong(-backoff / 10, backoff / 10 + 1);
+    if (backoff < interval) {
+      return backoff;
+    }
+    // remain on the cadence of the check
+    adaptiveGap = interval;
+    return 0;
   }
 
-  HealthCheck executeCmd(CmdLineRunner runner) throws IOException {
-    Process process = runner.run(this);
-    try {
-      if (process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
-        // health check completed within timeout
-        if (process.exitValue() == 0) {
-          synchronized (this) {
-            healthy = Boolean.TRUE;
-          }
-        }
-      } else {
-        // health check too long
-        synchronized (this) {
-          healthy = Boolean.FALSE;
-        }
-        process.destroyForcibly();
+  /**
+   * Record the health reported by the container engine, unless already determined
+   *
+   * @param health The reported health
+   * @return true, if the health was recorded
+   */
+  public synchronized boolean report(boolean health) {
+    if (healthy != null) {
+      return false;
+    }
+    healthy = health;
+    return true;
+  }
+
+  private void executeCmd(
+      CmdLineRunner runner, ProbeLimiter limiter, CompletableFuture<HealthCheck> future) {
+    synchronized (this) {
+      if (healthy != null) {
+        // reported while the probe was pending
+        limiter.release();
+        future.complete(this);
+        return;
       }
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
     }
-    return this;
+    Process process;
+    try {
+      process = runner.run(this);
+    } catch (IOException | RuntimeException e) {
+      limiter.release();
+      future.completeExceptionally(e);
+      return;
+    }
+    process
+        .onExit()
+        .orTimeout(timeout, TimeUnit.MILLISECONDS)
+        .whenComplete(
+            (exited, timedOut) -> {
+              if (timedOut != null) {
+                // health check too long
+                process.destroyForcibly();
+                report(false);
+              } else if (exited.exitValue() == 0) {
+                report(true);
+              }
+              limiter.release();
+              future.complete(this);
+            });
   }
 
   @FunctionalInterface
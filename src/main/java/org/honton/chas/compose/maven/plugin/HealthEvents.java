@@ -0,0 +1,154 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import org.honton.chas.compose.maven.plugin.ExecHelper.Sink;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+/**
+ * Health of services, as reported by the lines of `compose events --json`. When failing fast, a
+ * container started while watching which dies with a non-zero exit code, runs out of memory, or
+ * restarts repeatedly fails its service. Lines are accepted from a single thread; the status may be
+ * read from any thread.
+ */
+class HealthEvents implements Sink {
+
+  private static final String HEALTH_STATUS = "health_status:";
+  private static final int RESTART_LIMIT = 3;
+
+  private final Yaml json = new Yaml(new SafeConstructor(new LoaderOptions()));
+  private final Map<String, Boolean> status = new ConcurrentHashMap<>();
+  private final boolean failFast;
+  // container id -> number of starts
+  private final Map<String, Integer> starts = new HashMap<>();
+  private volatile BiConsumer<String, Boolean> listener;
+  private volatile Runnable failureListener;
+  private volatile String failedService;
+  private volatile String failure;
+
+  HealthEvents(boolean failFast) {
+    this.failFast = failFast;
+  }
+
+  @Override
+  public void accept(CharSequence line) {
+    Object event;
+    try {
+      event = json.load(line.toString());
+    } catch (YAMLException ignored) {
+      return;
+    }
+    if (event instanceof Map<?, ?> map
+        && map.get("action") instanceof String action
+        && map.get("service") instanceof String service) {
+      if (action.startsWith(HEALTH_STATUS)) {
+        health(service, action);
+      } else if (failFast && map.get("id") instanceof String id) {
+        lifecycle(service, action, id, map.get("attributes"));
+      }
+    }
+  }
+
+  private void health(String service, String action) {
+    Boolean healthy =
+        switch (action.substring(HEALTH_STATUS.length()).strip()) {
+          case "healthy" -> Boolean.TRUE;
+          case "unhealthy" -> Boolean.FALSE;
+          default -> null;
+        };
+    if (healthy != null) {
+      status.put(service, healthy);
+      BiConsumer<String, Boolean> current = listener;
+      if (current != null) {
+        current.accept(service, healthy);
+      }
+    }
+  }
+
+  private void lifecycle(String service, String action, String id, Object attributes) {
+    switch (action) {
+      case "start" -> {
+        int count = starts.merge(id, 1, Integer::sum);
+        if (count > RESTART_LIMIT) {
+          fail(service, "restarted " + (count - 1) + " times");
+        }
+      }
+      case "die" -> {
+        // containers which were running before watching are replaced, not crashed
+        if (starts.containsKey(id)
+            && attributes instanceof Map<?, ?> map
+            && map.get("exitCode") != null
+            && !"0".equals(String.valueOf(map.get("exitCode")))) {
+          fail(service, "exited with code " + map.get("exitCode"));
+        }
+      }
+      case "oom" -> fail(service, "ran out of memory");
+      default -> {
+        // other events do not indicate failure
+      }
+    }
+  }
+
+  private void fail(String service, String reason) {
+    if (failure == null) {
+      failedService = service;
+      failure = "Service " + service + " " + reason;
+      Runnable current = failureListener;
+      if (current != null) {
+        current.run();
+      }
+    }
+  }
+
+  /**
+   * The first failure of a service
+   *
+   * @return A description of the failure, or null if no service failed
+   */
+  String getFailure() {
+    return failure;
+  }
+
+  /**
+   * The service which failed first
+   *
+   * @return The name of the service, or null if no service failed
+   */
+  String getFailedService() {
+    return failedService;
+  }
+
+  /**
+   * Set the receiver of failure notifications. The receiver is called on the thread reading the
+   * events.
+   *
+   * @param failureListener Called upon the first failure
+   */
+  void setFailureListener(Runnable failureListener) {
+    this.failureListener = failureListener;
+  }
+
+  /**
+   * The last reported health of a service
+   *
+   * @param service The name of the service
+   * @return true if healthy, false if unhealthy, or null if not reported
+   */
+  Boolean getStatus(String service) {
+    return status.get(service);
+  }
+
+  /**
+   * Set the receiver of health reports. The receiver is called on the thread reading the events.
+   *
+   * @param listener Accepts the service name and health
+   */
+  void setListener(BiConsumer<String, Boolean> listener) {
+    this.listener = listener;
+  }
+}
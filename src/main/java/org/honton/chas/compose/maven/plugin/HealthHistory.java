@@ -0,0 +1,128 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+/**
+ * Time from `compose up` until each service of a compose project became healthy, learned across
+ * builds as exponentially weighted moving averages of the time and of its deviation.
+ */
+class HealthHistory {
+
+  private static final String EXPECTED = "expected";
+  private static final String DEVIATION = "deviation";
+
+  // weight of the newest sample
+  private static final double WEIGHT = 0.3;
+
+  private final Path path;
+  private final Map<String, Estimate> estimates = new TreeMap<>();
+  private boolean changed;
+
+  private HealthHistory(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * Read the history; a missing or unreadable history is empty
+   *
+   * @param path The location of the history
+   * @return The history
+   */
+  static HealthHistory read(Path path) {
+    HealthHistory history = new HealthHistory(path);
+    if (Files.isReadable(path)) {
+      try (BufferedReader reader = Files.newBufferedReader(path)) {
+        if (new Yaml(new SafeConstructor(new LoaderOptions())).load(reader)
+            instanceof Map<?, ?> services) {
+          services.forEach(
+              (service, estimate) -> {
+                if (estimate instanceof Map<?, ?> map
+                    && map.get(EXPECTED) instanceof Number expected
+                    && map.get(DEVIATION) instanceof Number deviation) {
+                  history.estimates.put(
+                      String.valueOf(service),
+                      new Estimate(expected.longValue(), deviation.longValue()));
+                }
+              });
+        }
+      } catch (IOException | YAMLException ignored) {
+        // start learning again
+      }
+    }
+    return history;
+  }
+
+  /**
+   * The expected time to healthy of a service
+   *
+   * @param service The name of the service
+   * @return The estimate, or null if the service has not been healthy before
+   */
+  Estimate get(String service) {
+    return estimates.get(service);
+  }
+
+  /**
+   * Learn from the time a service took to become healthy
+   *
+   * @param service The name of the service
+   * @param millis Time from `compose up` until healthy
+   */
+  synchronized void record(String service, long millis) {
+    estimates.merge(
+        service, new Estimate(millis, millis / 4), (prior, sample) -> prior.update(millis));
+    changed = true;
+  }
+
+  /** Save the history, if changed, replacing the prior history atomically */
+  synchronized void write() throws IOException {
+    if (!changed) {
+      return;
+    }
+    Map<String, Object> services = new LinkedHashMap<>();
+    estimates.forEach(
+        (service, estimate) -> {
+          Map<String, Object> map = new LinkedHashMap<>();
+          map.put(EXPECTED, estimate.expected());
+          map.put(DEVIATION, estimate.deviation());
+          services.put(service, map);
+        });
+    Files.createDirectories(path.getParent());
+    Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temporary)) {
+      DumperOptions options = new DumperOptions();
+      options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+      new Yaml(options).dump(services, writer);
+    }
+    Files.move(
+        temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Expected time to healthy
+   *
+   * @param expected Average milliseconds from `compose up` until healthy
+   * @param deviation Average absolute deviation from the expected time
+   */
+  record Estimate(long expected, long deviation) {
+
+    Estimate update(long sample) {
+      return new Estimate(
+          Math.round((1 - WEIGHT) * expected + WEIGHT * sample),
+          Math.round((1 - WEIGHT) * deviation + WEIGHT * Math.abs(sample - expected)));
+    }
+  }
+}
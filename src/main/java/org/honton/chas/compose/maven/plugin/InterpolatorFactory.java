@@ -49,12 +49,21 @@ public class InterpolatorFactory {
   }
 
   public Interpolator createInterpolator(MavenSession session, MavenProject project) {
-    StringSearchInterpolator interpolator = new StringSearchInterpolator();
+    return configure(new StringSearchInterpolator(), session, project);
+  }
+
+  RecordingInterpolator createRecordingInterpolator(MavenSession session, MavenProject project) {
+    return configure(new RecordingInterpolator(), session, project);
+  }
+
+  private <T extends StringSearchInterpolator> T configure(
+      T interpolator, MavenSession session, MavenProject project) {
     interpolator.setEscapeString("\\");
-    interpolator.addValueSource(envSource());
-    interpolator.addValueSource(sessionSource(session));
-    interpolator.addValueSource(projectSource(project));
-    interpolator.addValueSource(projectPropertiesSource(project));
+    // values are frozen for the execution
+    interpolator.addValueSource(new SnapshotValueSource(envSource()));
+    interpolator.addValueSource(new SnapshotValueSource(sessionSource(session)));
+    interpolator.addValueSource(new SnapshotValueSource(projectSource(project)));
+    interpolator.addValueSource(new SnapshotValueSource(projectPropertiesSource(project)));
     return interpolator;
   }
 }
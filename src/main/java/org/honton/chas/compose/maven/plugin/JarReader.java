@@ -1,16 +1,19 @@
 package org.honton.chas.compose.maven.plugin;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.eclipse.aether.RepositoryException;
+import org.honton.chas.compose.maven.plugin.ArtifactHelper.InputStreamSupplier;
 
-abstract class JarReader implements AutoCloseable {
+abstract class JarReader implements Closeable {
 
   /** manifest entry that has comma separated list of services offered by the artifact */
   public static final String SERVICES = "Services";
@@ -24,7 +27,46 @@ abstract class JarReader implements AutoCloseable {
   private JarEntry jarEntry;
 
   JarReader(File localFile) throws IOException {
-    jarFile = new JarFile(localFile);
+    // compose artifacts are not signed, skip verification
+    jarFile = openJar(localFile);
+  }
+
+  /**
+   * Open a jar to read the manifest and index, without visiting any other entry
+   *
+   * @param localFile The jar
+   * @return The jar, opened without verification
+   */
+  static JarFile openJar(File localFile) throws IOException {
+    return new JarFile(localFile, false);
+  }
+
+  /**
+   * Get a main attribute of a manifest
+   *
+   * @param manifest The manifest, may be null
+   * @param attributeName The name of the main attribute
+   * @return The comma separated values of the attribute
+   */
+  static String[] mainAttribute(Manifest manifest, String attributeName) {
+    String value = manifest != null ? manifest.getMainAttributes().getValue(attributeName) : null;
+    return value != null ? value.split(",") : EMPTY;
+  }
+
+  /**
+   * Read the manifest attributes and index of a jar
+   *
+   * @param localFile The compose artifact
+   * @return The facts of the jar
+   */
+  static JarFacts readFacts(File localFile) throws IOException {
+    try (JarFile jar = openJar(localFile)) {
+      Manifest manifest = jar.getManifest();
+      return new JarFacts(
+          List.of(mainAttribute(manifest, SERVICES)),
+          List.of(mainAttribute(manifest, DEPENDENCIES)),
+          ComposeIndex.read(jar));
+    }
   }
 
   void visitEntries() throws IOException, MojoExecutionException, RepositoryException {
@@ -45,6 +87,12 @@ abstract class JarReader implements AutoCloseable {
     return jarFile.getInputStream(jarEntry);
   }
 
+  /** Supplier of the current entry's content, which remains valid after visiting other entries */
+  InputStreamSupplier getInputStreamSupplier() {
+    JarEntry entry = jarEntry;
+    return () -> jarFile.getInputStream(entry);
+  }
+
   @Override
   public void close() throws IOException {
     jarFile.close();
@@ -52,15 +100,23 @@ abstract class JarReader implements AutoCloseable {
 
   abstract void process() throws IOException, MojoExecutionException, RepositoryException;
 
-  boolean isManifestEntry() {
-    return jarEntry.getName().equals("META-INF/MANIFEST.MF");
+  /**
+   * Whether the current entry is jar metadata, such as the manifest, the compose index, or maven
+   * descriptors, rather than compose configuration
+   *
+   * @return true, if the entry is within META-INF
+   */
+  boolean isMetaInfEntry() {
+    return jarEntry.getName().startsWith("META-INF/");
   }
 
-  String[] extractMainAttributes(String attributeName) throws IOException {
-    try (InputStream is = jarFile.getInputStream(jarEntry)) {
-      Manifest manifest = new Manifest(is);
-      String value = manifest.getMainAttributes().getValue(attributeName);
-      return value != null ? value.split(",") : EMPTY;
-    }
-  }
+  /**
+   * The manifest attributes and index of a compose artifact. The index is shared, and must not be
+   * modified.
+   *
+   * @param services The services offered by the artifact
+   * @param dependencies The coordinates of the direct dependencies
+   * @param index The index, or null if the jar does not have an index
+   */
+  record JarFacts(List<String> services, List<String> dependencies, ComposeIndex index) {}
 }
@@ -0,0 +1,120 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+import org.codehaus.plexus.interpolation.InterpolationException;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Fingerprint of the inputs of the link goal. The fingerprint is a digest of the resolved
+ * dependencies, the compose source directory, and the link configuration; plus the value of each
+ * property expression which was interpolated while linking.
+ */
+class LinkFingerprint {
+
+  private static final String INPUTS = "inputs";
+  private static final String PROPERTIES = "properties";
+
+  private final Path path;
+  private final Yaml yaml;
+  private final MessageDigest digest = HashHelper.newDigest();
+  private String inputs;
+
+  LinkFingerprint(Path path, Yaml yaml) {
+    this.path = path;
+    this.yaml = yaml;
+  }
+
+  LinkFingerprint add(String value) {
+    HashHelper.update(digest, value);
+    return this;
+  }
+
+  LinkFingerprint addFile(Path file) throws IOException {
+    return add(HashHelper.sha256(file));
+  }
+
+  /** Add the relative name and content of each regular file in the directory tree */
+  LinkFingerprint addTree(Path directory) throws IOException {
+    if (Files.isDirectory(directory)) {
+      List<Path> files;
+      try (Stream<Path> walk = Files.walk(directory)) {
+        files = walk.filter(Files::isRegularFile).sorted().toList();
+      }
+      for (Path file : files) {
+        add(directory.relativize(file).toString()).addFile(file);
+      }
+    }
+    return this;
+  }
+
+  private String getInputs() {
+    if (inputs == null) {
+      inputs = HashHelper.hex(digest);
+    }
+    return inputs;
+  }
+
+  /**
+   * Check whether the prior link used the same inputs
+   *
+   * @param interpolator Evaluates the current value of the prior expressions, without recording
+   *     them; expressions no longer used by the link are dropped from the next fingerprint
+   * @return true, if the inputs and the interpolated values are unchanged
+   */
+  boolean isCurrent(RecordingInterpolator interpolator) throws IOException {
+    if (!Files.isReadable(path)) {
+      return false;
+    }
+    Map<String, Object> prior;
+    try (BufferedReader reader = Files.newBufferedReader(path)) {
+      prior = yaml.load(reader);
+    }
+    if (prior == null || !getInputs().equals(prior.get(INPUTS))) {
+      return false;
+    }
+    if (prior.get(PROPERTIES) instanceof Map<?, ?> properties) {
+      try {
+        for (Map.Entry<?, ?> entry : properties.entrySet()) {
+          String current = interpolator.evaluate((String) entry.getKey());
+          if (!Objects.equals(current, entry.getValue())) {
+            return false;
+          }
+        }
+      } catch (InterpolationException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Save the fingerprint
+   *
+   * @param properties The expressions interpolated while linking, and their values
+   */
+  void write(Map<String, String> properties) throws IOException {
+    Map<String, Object> fingerprint = new LinkedHashMap<>();
+    fingerprint.put(INPUTS, getInputs());
+    fingerprint.put(PROPERTIES, properties);
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(
+            path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      yaml.dump(fingerprint, writer);
+    }
+  }
+
+  void delete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+}
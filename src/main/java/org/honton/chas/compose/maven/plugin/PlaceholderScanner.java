@@ -0,0 +1,71 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Passes content through unchanged, while noting whether the content contains a {@code ${}
+ * placeholder start, or a NUL byte which marks the content as binary.
+ */
+class PlaceholderScanner extends FilterInputStream {
+
+  private boolean dollar;
+  private boolean placeholder;
+  private boolean binary;
+
+  PlaceholderScanner(InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0) {
+      scan((byte) b);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int count = super.read(buffer, offset, length);
+    for (int i = 0; i < count; ++i) {
+      scan(buffer[offset + i]);
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    // skipped content must also be scanned
+    return Math.max(0, read(new byte[(int) Math.max(0, Math.min(n, 8192))]));
+  }
+
+  private void scan(byte b) {
+    if (b == 0) {
+      binary = true;
+    } else if (b == '{' && dollar) {
+      placeholder = true;
+    }
+    dollar = b == '$';
+  }
+
+  /**
+   * Whether the content read so far would be changed by interpolation
+   *
+   * @return true, if a placeholder was seen in non-binary content
+   */
+  boolean isFilterable() {
+    return placeholder && !binary;
+  }
+
+  /**
+   * Whether the content read so far is binary
+   *
+   * @return true, if a NUL byte was seen
+   */
+  boolean isBinary() {
+    return binary;
+  }
+}
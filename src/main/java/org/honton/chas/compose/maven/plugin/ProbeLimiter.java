@@ -0,0 +1,49 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Bounds the number of health probes running at once, without blocking the caller. A probe beyond
+ * the limit waits, in order, until a running probe releases its permit.
+ */
+class ProbeLimiter {
+
+  private final int limit;
+  private final Queue<Runnable> waiting = new ArrayDeque<>();
+  private int running;
+
+  ProbeLimiter(int limit) {
+    this.limit = Math.max(1, limit);
+  }
+
+  /**
+   * Start a probe now, or once a permit is available. The probe must eventually call {@link
+   * #release()}.
+   *
+   * @param probe Starts the probe
+   */
+  void launch(Runnable probe) {
+    synchronized (this) {
+      if (running >= limit) {
+        waiting.add(probe);
+        return;
+      }
+      ++running;
+    }
+    probe.run();
+  }
+
+  /** Release the permit of a completed probe, passing the permit to a waiting probe */
+  void release() {
+    Runnable next;
+    synchronized (this) {
+      next = waiting.poll();
+      if (next == null) {
+        --running;
+        return;
+      }
+    }
+    next.run();
+  }
+}
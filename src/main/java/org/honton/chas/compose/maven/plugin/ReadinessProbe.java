@@ -0,0 +1,159 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Host side readiness probes of published ports. All ports are probed concurrently from the calling
+ * thread with non-blocking connects over a single selector. A port with a url is ready once a GET
+ * of the url answers with a status below 400; other ports are ready once a connect succeeds, which
+ * docker's userland proxy may accept before the container listens.
+ */
+class ReadinessProbe {
+
+  private static final long RETRY = 250L;
+  private static final Duration HTTP_TIMEOUT = Duration.ofSeconds(2);
+
+  private final HttpClient httpClient =
+      HttpClient.newBuilder().connectTimeout(HTTP_TIMEOUT).build();
+
+  /**
+   * Probe until every target is ready, or the deadline passes
+   *
+   * @param targets The ports to probe
+   * @param deadLine Time at which probing stops
+   * @return The names of the targets which are not ready
+   */
+  Set<String> await(List<Target> targets, long deadLine) throws IOException {
+    Map<Target, Long> pending = new LinkedHashMap<>();
+    targets.forEach(target -> pending.put(target, 0L));
+    Set<Target> inFlight = new HashSet<>();
+    Queue<Map.Entry<Target, Boolean>> httpResults = new ConcurrentLinkedQueue<>();
+
+    try (Selector selector = Selector.open()) {
+      while (!pending.isEmpty()) {
+        long now = System.currentTimeMillis();
+        if (now >= deadLine) {
+          break;
+        }
+
+        long nextAttempt = deadLine;
+        for (Map.Entry<Target, Long> entry : pending.entrySet()) {
+          Target target = entry.getKey();
+          if (!inFlight.contains(target)) {
+            if (entry.getValue() <= now) {
+              inFlight.add(target);
+              connect(selector, target, httpResults);
+            } else {
+              nextAttempt = Math.min(nextAttempt, entry.getValue());
+            }
+          }
+        }
+
+        selector.select(Math.max(1L, nextAttempt - now));
+        for (SelectionKey key : selector.selectedKeys()) {
+          Target target = (Target) key.attachment();
+          if (finishConnect((SocketChannel) key.channel())) {
+            connected(selector, target, httpResults);
+          } else {
+            httpResults.add(Map.entry(target, Boolean.FALSE));
+          }
+        }
+        selector.selectedKeys().clear();
+
+        for (Map.Entry<Target, Boolean> result; (result = httpResults.poll()) != null; ) {
+          Target target = result.getKey();
+          inFlight.remove(target);
+          if (result.getValue()) {
+            pending.remove(target);
+          } else {
+            pending.put(target, System.currentTimeMillis() + RETRY);
+          }
+        }
+      }
+      for (SelectionKey key : selector.keys()) {
+        key.channel().close();
+      }
+    }
+
+    Set<String> notReady = new HashSet<>();
+    pending.keySet().forEach(target -> notReady.add(target.name()));
+    return notReady;
+  }
+
+  private static boolean finishConnect(SocketChannel channel) {
+    try (channel) {
+      return channel.finishConnect();
+    } catch (IOException ignored) {
+      return false;
+    }
+  }
+
+  private void connect(
+      Selector selector, Target target, Queue<Map.Entry<Target, Boolean>> results) {
+    SocketChannel channel = null;
+    try {
+      channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      if (channel.connect(target.address())) {
+        channel.close();
+        connected(selector, target, results);
+      } else {
+        channel.register(selector, SelectionKey.OP_CONNECT, target);
+      }
+    } catch (IOException ignored) {
+      closeQuietly(channel);
+      results.add(Map.entry(target, Boolean.FALSE));
+    }
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+        // already failed
+      }
+    }
+  }
+
+  private void connected(
+      Selector selector, Target target, Queue<Map.Entry<Target, Boolean>> results) {
+    if (target.url() == null) {
+      results.add(Map.entry(target, Boolean.TRUE));
+      return;
+    }
+    HttpRequest request = HttpRequest.newBuilder(target.url()).timeout(HTTP_TIMEOUT).GET().build();
+    httpClient
+        .sendAsync(request, BodyHandlers.discarding())
+        .whenComplete(
+            (response, e) -> {
+              results.add(Map.entry(target, e == null && response.statusCode() < 400));
+              selector.wakeup();
+            });
+  }
+
+  /**
+   * A published port
+   *
+   * @param name The name of the port, reported when not ready
+   * @param address The host address of the port
+   * @param url The url to GET, or null to only connect
+   */
+  record Target(String name, InetSocketAddress address, URI url) {}
+}
@@ -0,0 +1,51 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.codehaus.plexus.interpolation.InterpolationException;
+import org.codehaus.plexus.interpolation.RecursionInterceptor;
+import org.codehaus.plexus.interpolation.SimpleRecursionInterceptor;
+import org.codehaus.plexus.interpolation.StringSearchInterpolator;
+
+/**
+ * Interpolator which records each expression it was asked to interpolate, and the result.
+ * Expressions are evaluated one at a time, as the underlying value sources are not thread safe. An
+ * expression is evaluated once; later requests answer the recorded result.
+ */
+class RecordingInterpolator extends StringSearchInterpolator {
+
+  private final Map<String, String> recorded = new ConcurrentHashMap<>();
+
+  @Override
+  public String interpolate(String input, RecursionInterceptor recursionInterceptor)
+      throws InterpolationException {
+    String result = recorded.get(input);
+    if (result == null) {
+      synchronized (this) {
+        result = super.interpolate(input, recursionInterceptor);
+        recorded.put(input, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Interpolate without recording the expression or the result
+   *
+   * @param input The expression
+   * @return The current value of the expression
+   */
+  synchronized String evaluate(String input) throws InterpolationException {
+    return super.interpolate(input, new SimpleRecursionInterceptor());
+  }
+
+  /**
+   * The expressions interpolated so far
+   *
+   * @return Sorted map of expression to interpolated value
+   */
+  Map<String, String> getRecorded() {
+    return new TreeMap<>(recorded);
+  }
+}
@@ -1,7 +1,10 @@
 package org.honton.chas.compose.maven.plugin;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -18,20 +21,13 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class SemVer implements Comparable<SemVer> {
 
-  private static final Pattern SEM_VER_EXACT =
-      Pattern.compile(
-          '^'
-              + "(((0|[1-9][0-9]*)(\\.(0|[1-9][0-9]*))*)"
-              + "(-([0-9A-Za-z-.]*))?)"
-              + "(\\+([0-9A-Za-z-.]*))?"
-              + '$');
-  private static final int ORDINAL_GROUP = 2;
-  private static final int PRE_RELEASE_GROUP = 7;
-  private static final int META_GROUP = 9;
-
-  private static final Pattern PRE_RELEASE = Pattern.compile("(([1-9]\\d*)|([0-9A-Za-z-]+))\\.?");
-  private static final int LEXICAL_GROUP = 1;
-  private static final int NUMERIC_GROUP = 2;
+  private static final int INTERN_LIMIT = 4096;
+  private static final Map<String, SemVer> INTERNED = new ConcurrentHashMap<>();
+
+  // pre-release identifier which is not numeric
+  private static final int LEXICAL = -1;
+  // numeric pre-release identifier which does not fit an int
+  private static final int OVERFLOW = -2;
 
   /** The version as given in the constructor */
   @Getter private final String version;
@@ -50,8 +46,16 @@ public class SemVer implements Comparable<SemVer> {
    */
   private final String metadata;
 
+  /** The pre-release identifiers */
+  @Getter(AccessLevel.NONE)
+  private final String[] identifiers;
+
+  /** The value of each numeric pre-release identifier; or LEXICAL, or OVERFLOW */
+  @Getter(AccessLevel.NONE)
+  private final int[] numbers;
+
   /**
-   * Create an instance from the string specification
+   * Create an instance from the string specification. Instances are interned, up to a limit.
    *
    * @param version The string
    * @return A SemVer; or null, if version is null
@@ -61,46 +65,154 @@ public class SemVer implements Comparable<SemVer> {
     if (version == null) {
       return null;
     }
-    Matcher matcher = SEM_VER_EXACT.matcher(version);
-    if (!matcher.find()) {
-      throw new IllegalArgumentException(version + " is not a proper semantic version");
+    SemVer semVer = INTERNED.get(version);
+    if (semVer == null) {
+      semVer = parse(version);
+      if (INTERNED.size() < INTERN_LIMIT) {
+        INTERNED.putIfAbsent(version, semVer);
+      }
+    }
+    return semVer;
+  }
+
+  /*
+   * Single pass parse of ordinals, then optional -pre-release, then optional +metadata.
+   * Ordinals do not have leading zeros. Not interned.
+   */
+  static SemVer parse(String input) {
+    int end = contentEnd(input);
+    String version = end == input.length() ? input : input.substring(0, end);
+    // start and end of each ordinal, parsed once the whole version is known to be proper
+    int[] spans = new int[8];
+    int count = 0;
+    int i = 0;
+    boolean more = true;
+    while (more) {
+      int start = i;
+      while (i < end && isDigit(version.charAt(i))) {
+        ++i;
+      }
+      if (i == start || (version.charAt(start) == '0' && i - start > 1)) {
+        throw improper(input);
+      }
+      if (count == spans.length) {
+        spans = Arrays.copyOf(spans, count * 2);
+      }
+      spans[count++] = start;
+      spans[count++] = i;
+      more = i < end && version.charAt(i) == '.';
+      if (more) {
+        ++i;
+      }
+    }
+
+    String preRelease = null;
+    if (i < end && version.charAt(i) == '-') {
+      int start = ++i;
+      i = skipIdentifiers(version, i, end);
+      preRelease = version.substring(start, i);
+    }
+    String metadata = null;
+    if (i < end && version.charAt(i) == '+') {
+      int start = ++i;
+      i = skipIdentifiers(version, i, end);
+      metadata = version.substring(start, i);
+    }
+    if (i != end) {
+      throw improper(input);
+    }
+
+    int[] ordinals = new int[count / 2];
+    for (int o = 0; o < ordinals.length; ++o) {
+      ordinals[o] = Integer.parseInt(version, spans[2 * o], spans[2 * o + 1], 10);
+    }
+    List<String> identifiers = preRelease != null ? tokenize(preRelease) : List.of();
+    int[] numbers = new int[identifiers.size()];
+    for (int t = 0; t < numbers.length; ++t) {
+      numbers[t] = numberOf(identifiers.get(t));
     }
     return new SemVer(
-        matcher.group(0),
-        getOrdinals(matcher),
-        matcher.group(PRE_RELEASE_GROUP),
-        matcher.group(META_GROUP));
+        version, ordinals, preRelease, metadata, identifiers.toArray(new String[0]), numbers);
+  }
+
+  private static IllegalArgumentException improper(String version) {
+    return new IllegalArgumentException(version + " is not a proper semantic version");
   }
 
-  private static int[] getOrdinals(Matcher matcher) {
-    String group = matcher.group(ORDINAL_GROUP);
-    String[] segments = group.split("\\.");
-    int[] ordinals = new int[segments.length];
-    for (int i = 0; i < segments.length; ++i) {
-      ordinals[i] = Integer.parseInt(segments[i]);
+  /** The end of the content, before any single trailing line terminator */
+  private static int contentEnd(String version) {
+    int length = version.length();
+    if (length > 0) {
+      char last = version.charAt(length - 1);
+      if (last == '\n') {
+        return length > 1 && version.charAt(length - 2) == '\r' ? length - 2 : length - 1;
+      }
+      if (last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+        return length - 1;
+      }
     }
-    return ordinals;
+    return length;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdentifier(char c) {
+    return isDigit(c) || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '-';
+  }
+
+  private static int skipIdentifiers(String version, int i, int end) {
+    while (i < end && (isIdentifier(version.charAt(i)) || version.charAt(i) == '.')) {
+      ++i;
+    }
+    return i;
   }
 
   /*
-   * Compare a segment numerically
-   * return 0, if leftField and rightField are equal; >0, if leftField>rightField; <0, if leftField<rightField
+   * Split the pre-release into identifiers. A run of digits not starting with zero is a numeric
+   * identifier, even when followed by letters; i.e. 11a is 11 then a. Empty identifiers are skipped.
    */
-  private static int numberCompare(String leftField, String rightField) {
-    if (leftField != null) {
-      if (rightField == null) {
-        // leftField is number and rightField is not.  Numbers are ordered earlier than alpha fields
-        return -1;
+  private static List<String> tokenize(String preRelease) {
+    List<String> identifiers = new ArrayList<>();
+    int length = preRelease.length();
+    int i = 0;
+    while (i < length) {
+      char c = preRelease.charAt(i);
+      if (c == '.') {
+        ++i;
+        continue;
       }
-      // both are numbers, compare numerically
-      return Integer.parseInt(leftField) - Integer.parseInt(rightField);
-    } else if (rightField != null) {
-      // rightField is number and leftField is not.
-      // Numbers are ordered earlier than alpha fields
-      return 1;
+      int start = i++;
+      if (c >= '1' && c <= '9') {
+        while (i < length && isDigit(preRelease.charAt(i))) {
+          ++i;
+        }
+      } else {
+        while (i < length && isIdentifier(preRelease.charAt(i))) {
+          ++i;
+        }
+      }
+      identifiers.add(preRelease.substring(start, i));
+    }
+    return identifiers;
+  }
+
+  private static int numberOf(String identifier) {
+    char first = identifier.charAt(0);
+    if (first < '1' || first > '9') {
+      return LEXICAL;
+    }
+    for (int i = 1; i < identifier.length(); ++i) {
+      if (!isDigit(identifier.charAt(i))) {
+        return LEXICAL;
+      }
+    }
+    try {
+      return Integer.parseInt(identifier);
+    } catch (NumberFormatException e) {
+      return OVERFLOW;
     }
-    // both are not numbers
-    return 0;
   }
 
   /** The major version. i.e. X of X.Y.Z */
@@ -151,23 +263,48 @@ public class SemVer implements Comparable<SemVer> {
       return -1;
     }
 
-    Matcher a = PRE_RELEASE.matcher(preRelease);
-    Matcher e = PRE_RELEASE.matcher(other.preRelease);
-    while (a.find()) {
-      if (!e.find()) {
+    for (int i = 0; i < identifiers.length; ++i) {
+      if (i == other.identifiers.length) {
         return 1;
       }
 
-      int numberCmp = numberCompare(a.group(NUMERIC_GROUP), e.group(NUMERIC_GROUP));
+      int numberCmp = numberCompare(i, other);
       if (numberCmp != 0) {
         return numberCmp;
       }
 
-      int lexicalCmp = a.group(LEXICAL_GROUP).compareTo(e.group(LEXICAL_GROUP));
+      int lexicalCmp = identifiers[i].compareTo(other.identifiers[i]);
       if (lexicalCmp != 0) {
         return lexicalCmp;
       }
     }
-    return e.find() ? -1 : 0;
+    return identifiers.length < other.identifiers.length ? -1 : 0;
+  }
+
+  /*
+   * Compare an identifier numerically
+   * return 0, if both are equal numbers or both are not numbers; >0, if this>other; <0, if this<other
+   */
+  private int numberCompare(int i, SemVer other) {
+    int left = numbers[i];
+    int right = other.numbers[i];
+    if (left != LEXICAL) {
+      if (right == LEXICAL) {
+        // left is number and right is not.  Numbers are ordered earlier than alpha fields
+        return -1;
+      }
+      if (left == OVERFLOW || right == OVERFLOW) {
+        // both are numbers, at least one too large to compare
+        return Integer.parseInt(identifiers[i]) - Integer.parseInt(other.identifiers[i]);
+      }
+      // both are numbers, compare numerically
+      return left - right;
+    } else if (right != LEXICAL) {
+      // right is number and left is not.
+      // Numbers are ordered earlier than alpha fields
+      return 1;
+    }
+    // both are not numbers
+    return 0;
   }
 }
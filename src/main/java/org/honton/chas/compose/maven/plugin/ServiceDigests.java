@@ -0,0 +1,98 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import lombok.experimental.UtilityClass;
+
+/** Digests of the services of a reusable project, and the services whose containers differ */
+@UtilityClass
+class ServiceDigests {
+
+  /**
+   * Digest each service. A service digest covers the common digest, the service definition, and the
+   * digests of the services it depends upon, so a change propagates to every dependant.
+   *
+   * @param base Digest of the inputs common to all services
+   * @param services The services of the compose model
+   * @return Service name to digest
+   */
+  Map<String, String> digests(String base, Map<?, ?> services) {
+    Map<String, String> digests = new TreeMap<>();
+    for (Object name : services.keySet()) {
+      digest(base, services, (String) name, digests, new HashSet<>());
+    }
+    return digests;
+  }
+
+  private String digest(
+      String base,
+      Map<?, ?> services,
+      String name,
+      Map<String, String> digests,
+      Set<String> visiting) {
+    String digest = digests.get(name);
+    if (digest != null || !visiting.add(name)) {
+      return digest;
+    }
+    MessageDigest md = HashHelper.newDigest();
+    HashHelper.update(md, base);
+    Object service = services.get(name);
+    HashHelper.update(md, String.valueOf(service));
+    if (service instanceof Map<?, ?> definition) {
+      for (String dependency : dependsOn(definition.get("depends_on"))) {
+        if (services.containsKey(dependency)) {
+          HashHelper.update(
+              md, String.valueOf(digest(base, services, dependency, digests, visiting)));
+        }
+      }
+    }
+    digest = HashHelper.hex(md);
+    digests.put(name, digest);
+    return digest;
+  }
+
+  /** depends_on is either a list of service names, or a map of service name to condition */
+  private Set<String> dependsOn(Object dependsOn) {
+    Set<String> names = new TreeSet<>();
+    if (dependsOn instanceof Map<?, ?> map) {
+      map.keySet().forEach(name -> names.add(String.valueOf(name)));
+    } else if (dependsOn instanceof List<?> list) {
+      list.forEach(name -> names.add(String.valueOf(name)));
+    }
+    return names;
+  }
+
+  /**
+   * Find the services which do not have a container labeled with the service digest. An exited
+   * container of a one-shot service, which carries the digest, is unchanged.
+   *
+   * @param digests Service name to digest
+   * @param output Output of `compose ps --all --format '{{.Service}} {{.Labels}}'`
+   * @return The names of the changed services
+   */
+  Set<String> changed(Map<String, String> digests, String output) {
+    Set<String> changed = new TreeSet<>(digests.keySet());
+    Set<String> stale = new HashSet<>();
+    for (String line : output.split("\n")) {
+      int space = line.indexOf(' ');
+      if (space > 0) {
+        String service = line.substring(0, space);
+        String label = ComposeLogsGoal.INPUTS_LABEL + '=' + digests.get(service);
+        if (Arrays.asList(line.substring(space + 1).strip().split(",")).contains(label)) {
+          changed.remove(service);
+        } else {
+          // one of the service's containers is out of date
+          stale.add(service);
+        }
+      }
+    }
+    changed.addAll(stale);
+    return changed;
+  }
+}
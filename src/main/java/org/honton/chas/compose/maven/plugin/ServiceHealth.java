@@ -0,0 +1,62 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.experimental.UtilityClass;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+/** Health of services, as listed by `compose ps --format json` */
+@UtilityClass
+class ServiceHealth {
+
+  /**
+   * Parse the output of `compose ps --format json`, either a json array, or one json object per
+   * line. A service is unhealthy if any container is unhealthy, and healthy if every container is
+   * healthy.
+   *
+   * @param output The listing of containers
+   * @return Service name to health; services still starting, or without health check, are absent
+   */
+  Map<String, Boolean> parse(String output) {
+    Yaml json = new Yaml(new SafeConstructor(new LoaderOptions()));
+    List<Object> containers = new ArrayList<>();
+    String trimmed = output.strip();
+    if (trimmed.startsWith("[")) {
+      if (json.load(trimmed) instanceof List<?> list) {
+        containers.addAll(list);
+      }
+    } else {
+      for (String line : trimmed.split("\\n")) {
+        try {
+          containers.add(json.load(line));
+        } catch (YAMLException ignored) {
+          // not a container
+        }
+      }
+    }
+
+    // service -> health of its containers; absent while a container is starting
+    Map<String, Boolean> health = new HashMap<>();
+    Set<String> starting = new HashSet<>();
+    for (Object container : containers) {
+      if (container instanceof Map<?, ?> map
+          && map.get("Service") instanceof String service
+          && map.get("Health") instanceof String status) {
+        switch (status) {
+          case "unhealthy" -> health.put(service, Boolean.FALSE);
+          case "healthy" -> health.putIfAbsent(service, Boolean.TRUE);
+          default -> starting.add(service);
+        }
+      }
+    }
+    starting.forEach(service -> health.remove(service, Boolean.TRUE));
+    return health;
+  }
+}
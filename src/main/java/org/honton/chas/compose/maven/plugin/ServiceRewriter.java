@@ -0,0 +1,271 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/** Replaces variable ports with environment variables, and collects host mounts */
+@Getter
+class ServiceRewriter {
+
+  private static final String HOST_IP = "host_ip";
+  private static final String PUBLISHED = "published";
+  private static final String TARGET = "target";
+
+  @SuppressWarnings("PMD.AvoidUsingHardCodedIP")
+  private static final String ALL_INTERFACES = "0.0.0.0";
+
+  private final Set<String> hostMounts = new HashSet<>();
+  private final Map<String, PortInfo> variablePorts = new HashMap<>();
+
+  private static boolean isIpV6(String hostIp) {
+    return hostIp.indexOf(':') >= 0;
+  }
+
+  private static boolean isVariable(String property) {
+    return !property.isEmpty() && !Character.isDigit(property.charAt(0));
+  }
+
+  private static Map<String, Map<String, Object>> services(Map<String, Object> model) {
+    return model.get("services") instanceof Map<?, ?> unTyped
+        ? (Map<String, Map<String, Object>>) unTyped
+        : Map.of();
+  }
+
+  /**
+   * Find the variable ports of each service in the model, without replacing them
+   *
+   * @param model The compose model
+   * @return The property, or property expression, of each variable port
+   */
+  static List<String> variablePorts(Map<String, Object> model) {
+    List<String> properties = new ArrayList<>();
+    for (Map<String, Object> service : services(model).values()) {
+      if (service.get("ports") instanceof List<?> ports) {
+        ports.forEach(port -> addVariablePort(port, properties));
+      }
+    }
+    return properties;
+  }
+
+  private static void addVariablePort(Object port, List<String> properties) {
+    String property = null;
+    if (port instanceof String shortForm) {
+      int hostContainerIdx = shortForm.lastIndexOf(':');
+      if (hostContainerIdx >= 0) {
+        String host = shortForm.substring(0, hostContainerIdx);
+        property = host.substring(host.lastIndexOf(':') + 1);
+      }
+    } else if (port instanceof Map<?, ?> longForm && longForm.get(PUBLISHED) instanceof String p) {
+      property = p;
+    }
+    if (property != null && isVariable(property)) {
+      properties.add(property);
+    }
+  }
+
+  /**
+   * Replace the variable ports and collect the host mounts of each service in the model
+   *
+   * @param model The compose model
+   */
+  void rewrite(Map<String, Object> model) {
+    Map<String, Map<String, Object>> services = services(model);
+    services.forEach(this::replaceVariablePorts);
+    services.forEach(this::collectHostMounts);
+  }
+
+  /**
+   * Collect the host mounts of each service in the model, without replacing ports
+   *
+   * @param model The compose model
+   */
+  void collectModelMounts(Map<String, Object> model) {
+    services(model).forEach(this::collectHostMounts);
+  }
+
+  /**
+   * Add host mounts which were previously collected
+   *
+   * @param mounts The host mounts
+   */
+  void addHostMounts(Collection<String> mounts) {
+    hostMounts.addAll(mounts);
+  }
+
+  private void replaceVariablePorts(String serviceName, Map<String, Object> serviceDefinition) {
+    if (serviceDefinition.get("ports") instanceof List<?> unTyped) {
+      serviceDefinition.put("ports", replacePorts(serviceName, unTyped));
+    }
+  }
+
+  /**
+   * Replace the variable ports of a service
+   *
+   * @param serviceName The name of the service
+   * @param ports The ports of the service
+   * @return The replacement ports
+   */
+  List<Object> replacePorts(String serviceName, List<?> ports) {
+    return ports.stream().map(port -> getReplacement(serviceName, port)).toList();
+  }
+
+  @SneakyThrows
+  private Object getReplacement(String serviceName, Object port) {
+    if (port instanceof String shortForm) {
+      return shortFormReplacement(serviceName, shortForm);
+    }
+    if (port instanceof Map longForm) {
+      return longFormReplacement(serviceName, longForm);
+    }
+    return port;
+  }
+
+  private Object shortFormReplacement(String serviceName, String shortForm)
+      throws MojoExecutionException {
+    int hostContainerIdx = shortForm.lastIndexOf(':');
+    if (hostContainerIdx < 0) {
+      return shortForm;
+    }
+
+    Map<String, Object> longForm = new HashMap<>();
+
+    String host = shortForm.substring(0, hostContainerIdx);
+    String property;
+    String hostIp;
+    int ipHostIdx = host.lastIndexOf(':');
+    if (ipHostIdx < 0) {
+      property = host;
+      hostIp = ALL_INTERFACES;
+    } else {
+      property = host.substring(ipHostIdx + 1);
+      hostIp = host.substring(0, ipHostIdx);
+      if (isIpV6(hostIp)) {
+        throw new MojoExecutionException("port variables not supported for IPv6");
+      }
+    }
+    longForm.put(HOST_IP, hostIp);
+    if (!isVariable(property)) {
+      return shortForm;
+    }
+
+    String container = shortForm.substring(hostContainerIdx + 1);
+    int containerProtocolIdx = container.lastIndexOf('/');
+    String target;
+    if (containerProtocolIdx < 0) {
+      target = container;
+    } else {
+      target = container.substring(0, containerProtocolIdx);
+      longForm.put("protocol", container.substring(containerProtocolIdx + 1));
+    }
+    longForm.put(TARGET, Integer.valueOf(target));
+
+    if (container.indexOf('-') >= 0) {
+      throw new MojoExecutionException("range not supported for variable port");
+    }
+
+    String env = addVariablePort(serviceName, property, container);
+    if (env != null) {
+      longForm.put(PUBLISHED, env);
+    }
+    return longForm;
+  }
+
+  private Map<String, Object> longFormReplacement(String serviceName, Map<String, Object> longForm)
+      throws MojoExecutionException {
+
+    if (longForm.get(TARGET) instanceof Integer target) {
+      if (longForm.get(PUBLISHED) instanceof String property && isVariable(property)) {
+        if (longForm.get(HOST_IP) instanceof String hostIp && isIpV6(hostIp)) {
+          throw new MojoExecutionException("port variables not supported for IPv6");
+        }
+        String env = addVariablePort(serviceName, property, target.toString());
+        if (env == null) {
+          longForm.remove(PUBLISHED);
+        } else {
+          longForm.put(PUBLISHED, env);
+        }
+      }
+    } else {
+      throw new MojoExecutionException("missing port target for service " + serviceName);
+    }
+    return longForm;
+  }
+
+  private String addVariablePort(String serviceName, String property, String container)
+      throws MojoExecutionException {
+    String key;
+    String env;
+    PortInfo variablePort = new PortInfo().setService(serviceName).setContainer(container);
+    if (property.startsWith("${") && property.endsWith("}")) {
+      key = property.substring(2, property.length() - 1);
+      env = key.toUpperCase(Locale.ROOT).replace('.', '_');
+      variablePort.setEnv(env);
+    } else {
+      key = property;
+      env = null;
+    }
+    variablePort.setProperty(key);
+    PortInfo prior = variablePorts.put(key, variablePort);
+    if (prior != null) {
+      if (prior.equals(variablePort)) {
+        return null;
+      }
+      throw new MojoExecutionException(
+          "property "
+              + key
+              + " for service "
+              + variablePort.getService()
+              + " was previously defined in "
+              + prior.getService());
+    }
+    return env != null ? "${" + env + "}" : null;
+  }
+
+  @SuppressWarnings("PMD.UnusedFormalParameter")
+  private void collectHostMounts(String serviceName, Map<String, Object> model) {
+    if (model.get("volumes") instanceof List<?> volumes) {
+      collectHostMounts(volumes);
+    }
+  }
+
+  /**
+   * Collect the host directories mounted by a service
+   *
+   * @param volumes The volumes of the service
+   */
+  void collectHostMounts(List<?> volumes) {
+    volumes.forEach(this::collectHostMount);
+  }
+
+  private void collectHostMount(Object volume) {
+    if (volume instanceof Map<?, ?> longSyntax) {
+      if ("bind".equals(longSyntax.get("type"))
+          && longSyntax.get("source") instanceof String volumeSource) {
+        collectVolume(volumeSource);
+      }
+    } else if (volume instanceof String shortSyntax) {
+      int colonIdx = shortSyntax.indexOf(':');
+      if (colonIdx >= 0) {
+        collectVolume(shortSyntax.substring(0, colonIdx));
+      }
+    }
+  }
+
+  private void collectVolume(String volume) {
+    if (!volume.isEmpty()) {
+      char isPath = volume.charAt(0);
+      if (isPath == '/' || isPath == '.') {
+        hostMounts.add(volume);
+      }
+    }
+  }
+}
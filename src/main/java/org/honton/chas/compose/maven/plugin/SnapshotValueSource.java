@@ -0,0 +1,38 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.codehaus.plexus.interpolation.ValueSource;
+
+/**
+ * Value source which remembers the first value of each expression. Values, and reflective lookups
+ * of the project model, are evaluated once per execution.
+ */
+class SnapshotValueSource implements ValueSource {
+
+  private final ValueSource delegate;
+  private final Map<String, Optional<Object>> values = new ConcurrentHashMap<>();
+
+  SnapshotValueSource(ValueSource delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Object getValue(String expression) {
+    return values
+        .computeIfAbsent(expression, e -> Optional.ofNullable(delegate.getValue(e)))
+        .orElse(null);
+  }
+
+  @Override
+  public List getFeedback() {
+    return delegate.getFeedback();
+  }
+
+  @Override
+  public void clearFeedback() {
+    delegate.clearFeedback();
+  }
+}
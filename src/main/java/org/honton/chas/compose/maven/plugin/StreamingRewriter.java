@@ -0,0 +1,401 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.DumperOptions.FlowStyle;
+import org.yaml.snakeyaml.DumperOptions.ScalarStyle;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ImplicitTuple;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Rewrites a compose file as a stream of yaml events. Only the {@code services.*.ports} and {@code
+ * services.*.volumes} sequences are materialized; all other events, including comments, are passed
+ * through to the output unchanged. A file with aliases or merge keys shares subtrees between
+ * services, and is not streamable.
+ */
+class StreamingRewriter {
+
+  private static final String SERVICES = "services";
+  private static final String PORTS = "services.*.ports";
+  private static final String VOLUMES = "services.*.volumes";
+
+  /** placeholder for aliases within a materialized sequence */
+  private static final Object ALIAS = new Object();
+
+  private static final ImplicitTuple PLAIN_IMPLICIT = new ImplicitTuple(true, false);
+  private static final ImplicitTuple QUOTED_IMPLICIT = new ImplicitTuple(true, true);
+
+  private final ServiceRewriter serviceRewriter;
+  private final Runnable awaitTurn;
+  private boolean turnTaken;
+  private final Resolver resolver = new Resolver();
+  private final LoaderOptions loaderOptions = new LoaderOptions();
+  private final DumperOptions dumperOptions = new DumperOptions();
+
+  /**
+   * Create a rewriter for a single compose file
+   *
+   * @param serviceRewriter The shared port and mount rewriter
+   * @param awaitTurn Invoked before the first use of the shared rewriter
+   */
+  StreamingRewriter(ServiceRewriter serviceRewriter, Runnable awaitTurn) {
+    this.serviceRewriter = serviceRewriter;
+    this.awaitTurn = awaitTurn;
+    loaderOptions.setProcessComments(true);
+    dumperOptions.setProcessComments(true);
+    dumperOptions.setSplitLines(false);
+  }
+
+  /**
+   * Check whether a compose file can be rewritten as a stream
+   *
+   * @param text The compose file
+   * @return false, if the file has an alias or a merge key
+   */
+  static boolean isStreamable(String text) {
+    if (text.indexOf('*') < 0 && !text.contains("<<")) {
+      return true;
+    }
+    Parser parser = new ParserImpl(new StreamReader(text), new LoaderOptions());
+    for (Event event = parser.getEvent();
+        !(event instanceof StreamEndEvent);
+        event = parser.getEvent()) {
+      if (event instanceof AliasEvent
+          || event instanceof ScalarEvent scalar
+              && scalar.isPlain()
+              && "<<".equals(scalar.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void completeNode(Deque<Frame> frames) {
+    Frame parent = frames.peek();
+    if (parent != null) {
+      parent.count++;
+    }
+  }
+
+  /** Read the events of a collection, up to and including the matching end event */
+  private static List<Event> capture(Parser parser, Event start) {
+    List<Event> events = new ArrayList<>();
+    events.add(start);
+    for (int depth = 1; depth > 0; ) {
+      Event event = parser.getEvent();
+      events.add(event);
+      if (event instanceof CollectionStartEvent) {
+        ++depth;
+      } else if (event instanceof CollectionEndEvent) {
+        --depth;
+      }
+    }
+    return events;
+  }
+
+  /** Split the events between a sequence start and end into one slice per item */
+  private static List<List<Event>> slice(List<Event> sequence) {
+    List<List<Event>> items = new ArrayList<>();
+    List<Event> current = new ArrayList<>();
+    int depth = 0;
+    for (Event event : sequence.subList(1, sequence.size() - 1)) {
+      current.add(event);
+      if (event instanceof CollectionStartEvent) {
+        ++depth;
+      } else if (event instanceof CollectionEndEvent) {
+        --depth;
+      }
+      if (depth == 0 && event instanceof NodeEvent && !(event instanceof CollectionStartEvent)
+          || depth == 0 && event instanceof CollectionEndEvent) {
+        items.add(current);
+        current = new ArrayList<>();
+      }
+    }
+    // trailing comments
+    items.add(current);
+    return items;
+  }
+
+  private static void emitAll(Emitter emitter, List<Event> events) throws IOException {
+    for (Event event : events) {
+      emitter.emit(event);
+    }
+  }
+
+  private static Object snapshot(Object value) {
+    return value instanceof Map<?, ?> map ? new LinkedHashMap<>(map) : value;
+  }
+
+  /**
+   * Rewrite a compose file
+   *
+   * @param reader The source of the compose file
+   * @param writer The destination of the rewritten compose file
+   * @param json true, if the file is json
+   */
+  void rewrite(Reader reader, Writer writer, boolean json) throws IOException {
+    Parser parser = new ParserImpl(new StreamReader(reader), loaderOptions);
+    Emitter emitter = new Emitter(writer, dumperOptions);
+    Deque<Frame> frames = new ArrayDeque<>();
+    for (; ; ) {
+      Event event = parser.getEvent();
+      if (event instanceof NodeEvent) {
+        startNode(parser, emitter, frames, event, json);
+      } else {
+        emitter.emit(event);
+        if (event instanceof CollectionEndEvent) {
+          frames.pop();
+          completeNode(frames);
+        } else if (event instanceof StreamEndEvent) {
+          return;
+        }
+      }
+    }
+  }
+
+  private void startNode(
+      Parser parser, Emitter emitter, Deque<Frame> frames, Event event, boolean json)
+      throws IOException {
+    Frame parent = frames.peek();
+    String path;
+    String service;
+    if (parent == null) {
+      path = "";
+      service = null;
+    } else if (parent.isKey()) {
+      parent.key = event instanceof ScalarEvent scalar ? scalar.getValue() : null;
+      path = "?";
+      service = null;
+    } else {
+      path = parent.childPath();
+      service = parent.childService();
+    }
+
+    if (event instanceof SequenceStartEvent start && (PORTS.equals(path) || VOLUMES.equals(path))) {
+      List<Event> sequence = capture(parser, start);
+      if (PORTS.equals(path)) {
+        emitPorts(emitter, sequence, service, json);
+      } else {
+        serviceRewriter().collectHostMounts(values(sequence));
+        emitAll(emitter, sequence);
+      }
+      completeNode(frames);
+      return;
+    }
+
+    emitter.emit(event);
+    if (event instanceof CollectionStartEvent) {
+      frames.push(new Frame(path, service, event instanceof MappingStartEvent));
+    } else {
+      completeNode(frames);
+    }
+  }
+
+  private ServiceRewriter serviceRewriter() {
+    if (!turnTaken) {
+      awaitTurn.run();
+      turnTaken = true;
+    }
+    return serviceRewriter;
+  }
+
+  private List<Object> values(List<Event> sequence) {
+    List<Object> values = new ArrayList<>();
+    int[] index = {1};
+    while (skipComments(sequence, index) && !(sequence.get(index[0]) instanceof SequenceEndEvent)) {
+      values.add(build(sequence, index));
+    }
+    return values;
+  }
+
+  private void emitPorts(Emitter emitter, List<Event> sequence, String service, boolean json)
+      throws IOException {
+    List<List<Event>> items = slice(sequence);
+    List<Object> originals = new ArrayList<>();
+    List<Object> snapshots = new ArrayList<>();
+    for (List<Event> item : items.subList(0, items.size() - 1)) {
+      Object value = build(item, new int[] {0});
+      originals.add(value);
+      snapshots.add(snapshot(value));
+    }
+    List<Object> replacements = serviceRewriter().replacePorts(service, originals);
+
+    SequenceStartEvent start = (SequenceStartEvent) sequence.get(0);
+    FlowStyle flowStyle = json || start.isFlow() ? FlowStyle.FLOW : FlowStyle.BLOCK;
+    emitter.emit(start);
+    for (int i = 0; i < replacements.size(); ++i) {
+      List<Event> item = items.get(i);
+      Object replacement = replacements.get(i);
+      if (Objects.equals(snapshots.get(i), replacement)) {
+        emitAll(emitter, item);
+      } else {
+        String anchor = null;
+        for (Event event : item) {
+          if (event instanceof NodeEvent node) {
+            anchor = node.getAnchor();
+            break;
+          }
+          emitter.emit(event);
+        }
+        emitValue(emitter, anchor, replacement, json, flowStyle);
+      }
+    }
+    emitAll(emitter, items.get(items.size() - 1));
+    emitter.emit(sequence.get(sequence.size() - 1));
+  }
+
+  private void emitValue(
+      Emitter emitter, String anchor, Object value, boolean json, FlowStyle flowStyle)
+      throws IOException {
+    if (value instanceof Map<?, ?> map) {
+      emitter.emit(new MappingStartEvent(anchor, null, true, null, null, flowStyle));
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        emitValue(emitter, null, entry.getKey(), json, flowStyle);
+        emitValue(emitter, null, entry.getValue(), json, flowStyle);
+      }
+      emitter.emit(new MappingEndEvent(null, null));
+    } else if (value instanceof List<?> list) {
+      emitter.emit(new SequenceStartEvent(anchor, null, true, null, null, flowStyle));
+      for (Object item : list) {
+        emitValue(emitter, null, item, json, flowStyle);
+      }
+      emitter.emit(new SequenceEndEvent(null, null));
+    } else if (value instanceof String text) {
+      boolean plain = !json && Tag.STR.equals(resolver.resolve(NodeId.scalar, text, true));
+      emitter.emit(
+          new ScalarEvent(
+              anchor,
+              null,
+              plain ? PLAIN_IMPLICIT : QUOTED_IMPLICIT,
+              text,
+              null,
+              null,
+              plain ? ScalarStyle.PLAIN : ScalarStyle.DOUBLE_QUOTED));
+    } else {
+      emitter.emit(
+          new ScalarEvent(
+              anchor, null, PLAIN_IMPLICIT, String.valueOf(value), null, null, ScalarStyle.PLAIN));
+    }
+  }
+
+  /** Advance the index past any comments, return false if no events remain */
+  private static boolean skipComments(List<Event> events, int[] index) {
+    while (index[0] < events.size()) {
+      Event event = events.get(index[0]);
+      if (event instanceof NodeEvent || event instanceof CollectionEndEvent) {
+        return true;
+      }
+      ++index[0];
+    }
+    return false;
+  }
+
+  /** Build a value from the events starting at the index */
+  private Object build(List<Event> events, int[] index) {
+    skipComments(events, index);
+    Event event = events.get(index[0]++);
+    if (event instanceof ScalarEvent scalar) {
+      return scalar(scalar);
+    }
+    if (event instanceof MappingStartEvent) {
+      Map<Object, Object> map = new LinkedHashMap<>();
+      while (skipComments(events, index) && !(events.get(index[0]) instanceof MappingEndEvent)) {
+        Object key = build(events, index);
+        map.put(key, build(events, index));
+      }
+      ++index[0];
+      return map;
+    }
+    if (event instanceof SequenceStartEvent) {
+      List<Object> list = new ArrayList<>();
+      while (skipComments(events, index) && !(events.get(index[0]) instanceof SequenceEndEvent)) {
+        list.add(build(events, index));
+      }
+      ++index[0];
+      return list;
+    }
+    if (event instanceof AliasEvent) {
+      return ALIAS;
+    }
+    throw new IllegalStateException("unexpected event " + event);
+  }
+
+  private Object scalar(ScalarEvent event) {
+    String value = event.getValue();
+    if (!event.isPlain() || event.getTag() != null) {
+      return value;
+    }
+    Tag tag = resolver.resolve(NodeId.scalar, value, true);
+    if (Tag.INT.equals(tag)) {
+      try {
+        return Integer.valueOf(value);
+      } catch (NumberFormatException e) {
+        return value;
+      }
+    }
+    if (Tag.BOOL.equals(tag)) {
+      return Boolean.valueOf(value);
+    }
+    return Tag.NULL.equals(tag) ? null : value;
+  }
+
+  /** Position within a collection */
+  private static class Frame {
+    private final String path;
+    private final String service;
+    private final boolean mapping;
+    private int count;
+    private String key;
+
+    Frame(String path, String service, boolean mapping) {
+      this.path = path;
+      this.service = service;
+      this.mapping = mapping;
+    }
+
+    boolean isKey() {
+      return mapping && count % 2 == 0;
+    }
+
+    String childPath() {
+      if (!mapping) {
+        return path + "[]";
+      }
+      if (SERVICES.equals(path)) {
+        return "services.*";
+      }
+      return path.isEmpty() ? String.valueOf(key) : path + '.' + key;
+    }
+
+    String childService() {
+      return SERVICES.equals(path) ? key : service;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package org.honton.chas.compose.maven.plugin.schema;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled JSON schema. Supports the keywords of the bundled compose schema: type, enum,
+ * properties, patternProperties, additionalProperties, required, items, anyOf, oneOf, and local
+ * $ref. A oneOf is checked as an anyOf.
+ */
+class Schema {
+
+  private static final String DEFINITIONS = "#/definitions/";
+
+  final Set<String> types;
+  final Set<String> enumValues;
+  final Map<String, Schema> properties = new LinkedHashMap<>();
+  final Map<Pattern, Schema> patternProperties = new LinkedHashMap<>();
+  final List<String> required;
+  final List<Schema> alternatives;
+  final boolean additionalAllowed;
+  final Schema additionalProperties;
+  final Schema items;
+  private final String ref;
+  private final Map<String, Schema> definitions;
+
+  private Schema(Map<String, Object> json, Map<String, Schema> definitions) {
+    this.definitions = definitions;
+    Object type = json.get("type");
+    types = type instanceof List<?> list ? Set.copyOf((List<String>) list) : typeSet(type);
+    enumValues =
+        json.get("enum") instanceof List<?> list
+            ? Set.copyOf(list.stream().map(String::valueOf).toList())
+            : Set.of();
+    if (json.get("properties") instanceof Map<?, ?> map) {
+      map.forEach((k, v) -> properties.put((String) k, compile(v, definitions)));
+    }
+    if (json.get("patternProperties") instanceof Map<?, ?> map) {
+      map.forEach(
+          (k, v) -> patternProperties.put(Pattern.compile((String) k), compile(v, definitions)));
+    }
+    required = json.get("required") instanceof List<?> list ? (List<String>) list : List.of();
+    Object oneOf = json.getOrDefault("oneOf", json.get("anyOf"));
+    alternatives =
+        oneOf instanceof List<?> list
+            ? list.stream().map(alternative -> compile(alternative, definitions)).toList()
+            : List.of();
+    Object additional = json.get("additionalProperties");
+    additionalAllowed = !Boolean.FALSE.equals(additional);
+    additionalProperties =
+        additional instanceof Map<?, ?> ? compile(additional, definitions) : null;
+    items = json.containsKey("items") ? compile(json.get("items"), definitions) : null;
+    ref = (String) json.get("$ref");
+  }
+
+  private static Set<String> typeSet(Object type) {
+    return type instanceof String single ? Set.of(single) : Set.of();
+  }
+
+  private static Schema compile(Object json, Map<String, Schema> definitions) {
+    return new Schema(
+        json instanceof Map<?, ?> map ? (Map<String, Object>) map : Map.of(), definitions);
+  }
+
+  /**
+   * Compile a schema document
+   *
+   * @param json The parsed schema document
+   * @return The root schema
+   */
+  static Schema compile(Map<String, Object> json) {
+    Map<String, Schema> definitions = new LinkedHashMap<>();
+    if (json.get("definitions") instanceof Map<?, ?> map) {
+      map.forEach((k, v) -> definitions.put((String) k, compile(v, definitions)));
+    }
+    return new Schema(json, definitions);
+  }
+
+  /** The referenced schema, or this schema if not a reference */
+  Schema resolve() {
+    if (ref == null) {
+      return this;
+    }
+    Schema target =
+        ref.startsWith(DEFINITIONS) ? definitions.get(ref.substring(DEFINITIONS.length())) : null;
+    if (target == null) {
+      throw new IllegalStateException("Unresolved schema reference " + ref);
+    }
+    return target.resolve();
+  }
+
+  /**
+   * Whether a value of the type is allowed
+   *
+   * @param type The JSON type of the value
+   * @param placeholder Whether the value is a scalar holding an interpolation placeholder
+   */
+  boolean accepts(String type, boolean placeholder) {
+    if (types.isEmpty() || types.contains(type)) {
+      return true;
+    }
+    if ("integer".equals(type) && types.contains("number")) {
+      return true;
+    }
+    // an interpolated scalar may become any scalar type
+    return placeholder && types.stream().anyMatch(t -> !"object".equals(t) && !"array".equals(t));
+  }
+}
@@ -0,0 +1,238 @@
+package org.honton.chas.compose.maven.plugin.schema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import org.honton.chas.compose.maven.plugin.yaml.ComposeTag;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/** Validates composed yaml nodes against a JSON schema, reporting violations with their marks */
+public class SchemaValidator {
+
+  private static final Resolver RESOLVER = new Resolver();
+
+  private final Schema root;
+
+  SchemaValidator(Schema root) {
+    this.root = root;
+  }
+
+  /**
+   * The validator of the bundled compose specification. The schema is compiled once per plugin
+   * class loader, and so is shared by the modules of a reactor.
+   */
+  public static SchemaValidator composeSpec() {
+    return ComposeSpec.VALIDATOR;
+  }
+
+  static SchemaValidator load(String resource) throws IOException {
+    try (InputStream is = SchemaValidator.class.getResourceAsStream(resource)) {
+      if (is == null) {
+        throw new IOException("Missing schema " + resource);
+      }
+      Map<String, Object> json = new Yaml(new SafeConstructor(new LoaderOptions())).load(is);
+      return new SchemaValidator(Schema.compile(json));
+    }
+  }
+
+  private static String typeOf(Node node) {
+    if (node instanceof MappingNode) {
+      return "object";
+    }
+    if (node instanceof SequenceNode) {
+      return "array";
+    }
+    ScalarNode scalar = (ScalarNode) node;
+    Tag tag = scalar.getTag();
+    if (ComposeTag.OVERRIDE_TAG.equals(tag)) {
+      tag = RESOLVER.resolve(NodeId.scalar, scalar.getValue(), true);
+    }
+    if (Tag.INT.equals(tag)) {
+      return "integer";
+    }
+    if (Tag.FLOAT.equals(tag)) {
+      return "number";
+    }
+    if (Tag.BOOL.equals(tag)) {
+      return "boolean";
+    }
+    return Tag.NULL.equals(tag) ? "null" : "string";
+  }
+
+  private static boolean isPlaceholder(Node node) {
+    return node instanceof ScalarNode scalar && scalar.getValue().contains("${");
+  }
+
+  private static String child(String path, String key) {
+    return path.isEmpty() ? key : path + '.' + key;
+  }
+
+  /**
+   * Validate a document
+   *
+   * @param document The composed document, or null if the document is empty
+   * @return The violations, in document order
+   */
+  public List<Violation> validate(Node document) {
+    List<Violation> violations = new ArrayList<>();
+    if (document != null) {
+      validate(root, document, "", violations);
+    }
+    violations.sort(Comparator.comparingInt(v -> v.mark().getIndex()));
+    return violations;
+  }
+
+  private void validate(Schema schema, Node node, String path, List<Violation> violations) {
+    schema = schema.resolve();
+    if (ComposeTag.RESET_TAG.equals(node.getTag())) {
+      return;
+    }
+    String type = typeOf(node);
+    boolean placeholder = isPlaceholder(node);
+    if (!schema.accepts(type, placeholder)) {
+      violations.add(
+          new Violation(
+              node.getStartMark(),
+              path,
+              "is " + type + ", expected " + new TreeSet<>(schema.types)));
+      return;
+    }
+    if (!schema.alternatives.isEmpty()) {
+      validateAlternatives(schema, node, path, violations);
+    }
+    if (!schema.enumValues.isEmpty()
+        && !placeholder
+        && node instanceof ScalarNode scalar
+        && !schema.enumValues.contains(scalar.getValue())) {
+      violations.add(
+          new Violation(
+              node.getStartMark(),
+              path,
+              "is '"
+                  + scalar.getValue()
+                  + "', expected one of "
+                  + new TreeSet<>(schema.enumValues)));
+    }
+    if (node instanceof MappingNode mapping) {
+      validateMapping(schema, mapping, path, violations);
+    } else if (node instanceof SequenceNode sequence && schema.items != null) {
+      List<Node> values = sequence.getValue();
+      for (int i = 0; i < values.size(); ++i) {
+        validate(schema.items, values.get(i), path + '[' + i + ']', violations);
+      }
+    }
+  }
+
+  private void validateAlternatives(
+      Schema schema, Node node, String path, List<Violation> violations) {
+    String type = typeOf(node);
+    boolean placeholder = isPlaceholder(node);
+    List<Violation> closest = null;
+    TreeSet<String> expected = new TreeSet<>();
+    for (Schema alternative : schema.alternatives) {
+      Schema resolved = alternative.resolve();
+      expected.addAll(resolved.types);
+      if (resolved.accepts(type, placeholder)) {
+        List<Violation> attempt = new ArrayList<>();
+        validate(resolved, node, path, attempt);
+        if (attempt.stream().allMatch(Violation::warning)) {
+          violations.addAll(attempt);
+          return;
+        }
+        if (closest == null || attempt.size() < closest.size()) {
+          closest = attempt;
+        }
+      }
+    }
+    if (closest != null) {
+      violations.addAll(closest);
+    } else {
+      violations.add(
+          new Violation(node.getStartMark(), path, "is " + type + ", expected " + expected));
+    }
+  }
+
+  private void validateMapping(
+      Schema schema, MappingNode mapping, String path, List<Violation> violations) {
+    boolean merged = false;
+    List<String> keys = new ArrayList<>();
+    for (NodeTuple tuple : mapping.getValue()) {
+      Node keyNode = tuple.getKeyNode();
+      if (Tag.MERGE.equals(keyNode.getTag())) {
+        // merged content is validated where the anchor is defined
+        merged = true;
+        continue;
+      }
+      String key = keyNode instanceof ScalarNode scalar ? scalar.getValue() : keyNode.toString();
+      keys.add(key);
+      validateProperty(schema, key, keyNode, tuple.getValueNode(), child(path, key), violations);
+    }
+    if (!merged) {
+      for (String required : schema.required) {
+        if (!keys.contains(required)) {
+          violations.add(
+              new Violation(
+                  mapping.getStartMark(), path, "is missing required property '" + required + "'"));
+        }
+      }
+    }
+  }
+
+  private void validateProperty(
+      Schema schema,
+      String key,
+      Node keyNode,
+      Node value,
+      String path,
+      List<Violation> violations) {
+    Schema property = schema.properties.get(key);
+    if (property != null) {
+      validate(property, value, path, violations);
+      return;
+    }
+    boolean matched = false;
+    for (Map.Entry<Pattern, Schema> entry : schema.patternProperties.entrySet()) {
+      if (entry.getKey().matcher(key).find()) {
+        matched = true;
+        validate(entry.getValue(), value, path, violations);
+      }
+    }
+    if (matched) {
+      return;
+    }
+    if (!schema.additionalAllowed) {
+      violations.add(new Violation(keyNode.getStartMark(), path, "is not allowed", true));
+    } else if (schema.additionalProperties != null) {
+      validate(schema.additionalProperties, value, path, violations);
+    }
+  }
+
+  /** Holder of the compose specification validator, loaded on first use */
+  private static final class ComposeSpec {
+    static final SchemaValidator VALIDATOR;
+
+    static {
+      try {
+        VALIDATOR = load("compose-spec.json");
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package org.honton.chas.compose.maven.plugin.schema;
+
+import org.yaml.snakeyaml.error.Mark;
+
+/**
+ * A schema violation
+ *
+ * @param mark The location of the violating node
+ * @param path The dotted path of the violating node
+ * @param message The description of the violation
+ * @param warning True if the violation is a property unknown to the schema, which may be a newer or
+ *     omitted specification key rather than an error
+ */
+public record Violation(Mark mark, String path, String message, boolean warning) {
+
+  Violation(Mark mark, String path, String message) {
+    this(mark, path, message, false);
+  }
+
+  @Override
+  public String toString() {
+    return "line "
+        + (mark.getLine() + 1)
+        + ", column "
+        + (mark.getColumn() + 1)
+        + ": "
+        + (path.isEmpty() ? "document" : path)
+        + ' '
+        + message;
+  }
+}
@@ -0,0 +1,339 @@
+package org.honton.chas.compose.maven.plugin.yaml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Merge compose files following the <a
+ * href="https://github.com/compose-spec/compose-spec/blob/main/13-merge.md">compose-spec merge
+ * rules</a>. Mappings are merged recursively, sequences are appended, and scalars are replaced.
+ * Shell commands are replaced, and unique resources are merged by their unique key. A value tagged
+ * with {@code !reset} removes the prior value; a value tagged with {@code !override} replaces the
+ * prior value without merging.
+ */
+public class ComposeMerger {
+
+  private static final String SERVICES = "services";
+  private static final String EXTENDS = "extends";
+
+  /** top level elements which hold named resources */
+  private static final Set<String> RESOURCES =
+      Set.of(SERVICES, "networks", "volumes", "secrets", "configs");
+
+  /** sequences which replace, rather than append to, the prior value */
+  private static final Set<String> SHELL_COMMANDS =
+      Set.of("services.*.command", "services.*.entrypoint", "services.*.healthcheck.test");
+
+  /** elements which may be either a mapping or a sequence of {@code key=value} */
+  private static final Set<String> MAPPING_OR_SEQUENCE =
+      Set.of(
+          "services.*.annotations",
+          "services.*.build.args",
+          "services.*.build.labels",
+          "services.*.depends_on",
+          "services.*.environment",
+          "services.*.extra_hosts",
+          "services.*.labels",
+          "services.*.networks",
+          "services.*.sysctls");
+
+  private final Path projectDirectory;
+  private final Yaml parser = ComposeConstructor.createParser();
+  private Map<String, Object> model = new LinkedHashMap<>();
+
+  /**
+   * Create a merger
+   *
+   * @param projectDirectory The directory which compose file names are relative to
+   */
+  public ComposeMerger(Path projectDirectory) {
+    this.projectDirectory = projectDirectory;
+  }
+
+  private static String childPath(String path, String key) {
+    if (path.isEmpty()) {
+      return key;
+    }
+    return RESOURCES.contains(path) ? path + ".*" : path + '.' + key;
+  }
+
+  private static Object strip(Object value) {
+    if (value instanceof ComposeTag tag) {
+      return strip(tag.getValue());
+    }
+    if (value instanceof Map<?, ?> map) {
+      Map<String, Object> stripped = new LinkedHashMap<>();
+      map.forEach(
+          (k, v) -> {
+            if (!(v instanceof ResetTag)) {
+              stripped.put(String.valueOf(k), strip(v));
+            }
+          });
+      return stripped;
+    }
+    if (value instanceof List<?> list) {
+      List<Object> stripped = new ArrayList<>(list.size());
+      list.forEach(v -> stripped.add(strip(v)));
+      return stripped;
+    }
+    return value;
+  }
+
+  private static Map<String, Object> toMapping(String path, Object value) {
+    if (value instanceof Map<?, ?> map) {
+      return (Map<String, Object>) map;
+    }
+    Map<String, Object> mapping = new LinkedHashMap<>();
+    if (value instanceof List<?> list) {
+      for (Object item : list) {
+        String entry = String.valueOf(item);
+        if (path.endsWith(".depends_on")) {
+          mapping.put(entry, new LinkedHashMap<>(Map.of("condition", "service_started")));
+        } else if (path.endsWith(".networks")) {
+          mapping.put(entry, null);
+        } else {
+          int idx = entry.indexOf('=');
+          if (idx < 0 && path.endsWith(".extra_hosts")) {
+            idx = entry.indexOf(':');
+          }
+          if (idx < 0) {
+            mapping.put(entry, null);
+          } else {
+            mapping.put(entry.substring(0, idx), entry.substring(idx + 1));
+          }
+        }
+      }
+    }
+    return mapping;
+  }
+
+  /** The (host_ip, target, published, protocol) key of a port, with compose defaults applied */
+  private static List<String> portKey(
+      Object hostIp, Object target, Object published, Object protocol) {
+    return List.of(
+        hostIp != null ? String.valueOf(hostIp) : "",
+        String.valueOf(target),
+        published != null ? String.valueOf(published) : "",
+        protocol != null ? String.valueOf(protocol) : "tcp");
+  }
+
+  /** Key of the short port syntax, {@code [host_ip:][published:]target[/protocol]} */
+  private static List<String> portKey(String port) {
+    String protocol = null;
+    int slash = port.lastIndexOf('/');
+    if (slash >= 0) {
+      protocol = port.substring(slash + 1);
+      port = port.substring(0, slash);
+    }
+    String hostIp = null;
+    if (port.startsWith("[")) {
+      // ipv6 host address
+      int close = port.indexOf("]:");
+      if (close > 0) {
+        hostIp = port.substring(1, close);
+        port = port.substring(close + 2);
+      }
+    }
+    int colon = port.lastIndexOf(':');
+    String published = null;
+    if (colon >= 0) {
+      String host = port.substring(0, colon);
+      int ip = host.lastIndexOf(':');
+      published = host.substring(ip + 1);
+      if (ip >= 0) {
+        hostIp = host.substring(0, ip);
+      }
+    }
+    return portKey(
+        hostIp,
+        port.substring(colon + 1),
+        published == null || published.isEmpty() ? null : published,
+        protocol);
+  }
+
+  private static Object uniqueKey(String path, Object item) {
+    if (path.endsWith(".ports")) {
+      if (item instanceof Map<?, ?> longSyntax) {
+        return portKey(
+            longSyntax.get("host_ip"),
+            longSyntax.get("target"),
+            longSyntax.get("published"),
+            longSyntax.get("protocol"));
+      }
+      return portKey(String.valueOf(item));
+    }
+    if (item instanceof Map<?, ?> longSyntax) {
+      Object target = longSyntax.get("target");
+      return target != null ? target : longSyntax.get("source");
+    }
+    if (item instanceof String shortSyntax && path.endsWith(".volumes")) {
+      String[] parts = shortSyntax.split(":");
+      return parts.length > 1 ? parts[1] : parts[0];
+    }
+    return item;
+  }
+
+  private static List<Object> mergeUnique(String path, List<?> base, List<?> override) {
+    Map<Object, Object> unique = new LinkedHashMap<>();
+    base.forEach(item -> unique.put(uniqueKey(path, item), item));
+    override.forEach(item -> unique.put(uniqueKey(path, item), strip(item)));
+    return new ArrayList<>(unique.values());
+  }
+
+  private static boolean isUnique(String path) {
+    return path.startsWith("services.*.")
+        && (path.endsWith(".ports")
+            || path.endsWith(".volumes")
+            || path.endsWith(".secrets")
+            || path.endsWith(".configs"));
+  }
+
+  private static boolean isCollection(Object value) {
+    return value instanceof Map || value instanceof List;
+  }
+
+  private static Object merge(String path, Object base, Object override) {
+    if (override instanceof OverrideTag tag) {
+      return strip(tag.getValue());
+    }
+    if (base instanceof Map<?, ?> baseMap && override instanceof Map<?, ?> overrideMap) {
+      return mergeMapping(path, (Map<String, Object>) baseMap, overrideMap);
+    }
+    if (MAPPING_OR_SEQUENCE.contains(path) && isCollection(base) && isCollection(override)) {
+      return mergeMapping(path, toMapping(path, base), toMapping(path, override));
+    }
+    if (base instanceof List<?> baseList
+        && override instanceof List<?> overrideList
+        && !SHELL_COMMANDS.contains(path)) {
+      if (isUnique(path)) {
+        return mergeUnique(path, baseList, overrideList);
+      }
+      List<Object> appended = new ArrayList<>(baseList);
+      overrideList.forEach(item -> appended.add(strip(item)));
+      return appended;
+    }
+    return strip(override);
+  }
+
+  private static Map<String, Object> mergeMapping(
+      String path, Map<String, Object> base, Map<?, ?> override) {
+    Map<String, Object> result = new LinkedHashMap<>(base);
+    override.forEach(
+        (k, value) -> {
+          String key = String.valueOf(k);
+          if (value instanceof ResetTag) {
+            result.remove(key);
+          } else if (result.containsKey(key)) {
+            result.put(key, merge(childPath(path, key), result.get(key), value));
+          } else {
+            result.put(key, strip(value));
+          }
+        });
+    return result;
+  }
+
+  /**
+   * Merge a compose file into the model
+   *
+   * @param name The name of the compose file, relative to the project directory
+   * @throws IllegalArgumentException if a service extends a missing service, or is circular
+   */
+  public void mergeFile(String name) throws IOException {
+    merge(name, load(projectDirectory.resolve(name)));
+  }
+
+  /**
+   * Merge a compose model into the merged model
+   *
+   * @param name The name of the compose file, relative to the project directory
+   * @param fragment The model read from the compose file
+   */
+  public void merge(String name, Map<String, Object> fragment) throws IOException {
+    if (fragment != null) {
+      applyExtends(projectDirectory.resolve(name), fragment);
+      model = mergeMapping("", model, fragment);
+    }
+  }
+
+  /**
+   * Get the merged model
+   *
+   * @param projectName The project name, used if the model does not have a name
+   * @return The merged model, without any compose tags
+   */
+  public Map<String, Object> getModel(String projectName) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("name", projectName);
+    result.putAll((Map<String, Object>) strip(model));
+    return result;
+  }
+
+  private Map<String, Object> load(Path path) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(path)) {
+      return parser.load(reader);
+    }
+  }
+
+  /** Replace each service extension in the file with the merged definition */
+  private void applyExtends(Path file, Map<String, Object> fragment) throws IOException {
+    if (fragment.get(SERVICES) instanceof Map<?, ?> services) {
+      for (Object name : new ArrayList<>(services.keySet())) {
+        resolveService(file, (Map<String, Object>) services, String.valueOf(name), new HashSet<>());
+      }
+    }
+  }
+
+  private Map<String, Object> resolveService(
+      Path file, Map<String, Object> services, String name, Set<String> visiting)
+      throws IOException {
+    if (services == null || !(services.get(name) instanceof Map<?, ?> unTyped)) {
+      throw new IllegalArgumentException("service " + name + " not found in " + file);
+    }
+    Map<String, Object> service = (Map<String, Object>) unTyped;
+    Object extension = service.get(EXTENDS);
+    if (extension == null) {
+      return service;
+    }
+    if (!visiting.add(file + "#" + name)) {
+      throw new IllegalArgumentException("circular extends of service " + name + " in " + file);
+    }
+
+    String baseName;
+    Path baseFile = file;
+    Map<String, Object> baseServices = services;
+    if (extension instanceof Map<?, ?> extendsMap) {
+      if (!(extendsMap.get("service") instanceof String extended)) {
+        throw new IllegalArgumentException(
+            "extends of service " + name + " in " + file + " does not name a service");
+      }
+      baseName = extended;
+      if (extendsMap.get("file") instanceof String relative) {
+        baseFile = file.resolveSibling(relative).normalize();
+        Map<String, Object> baseModel = load(baseFile);
+        baseServices =
+            baseModel != null && baseModel.get(SERVICES) instanceof Map<?, ?> map
+                ? (Map<String, Object>) map
+                : null;
+      }
+    } else {
+      baseName = String.valueOf(extension);
+    }
+
+    Map<String, Object> base = resolveService(baseFile, baseServices, baseName, visiting);
+    Map<String, Object> derived = new LinkedHashMap<>(service);
+    derived.remove(EXTENDS);
+    Map<String, Object> resolved =
+        mergeMapping("services.*", (Map<String, Object>) strip(base), derived);
+    services.put(name, resolved);
+    return resolved;
+  }
+}
@@ -7,8 +7,8 @@ import org.yaml.snakeyaml.nodes.Tag;
 @Getter
 @AllArgsConstructor
 public class ComposeTag {
-  static final Tag RESET_TAG = new Tag("!reset");
-  static final Tag OVERRIDE_TAG = new Tag("!override");
+  public static final Tag RESET_TAG = new Tag("!reset");
+  public static final Tag OVERRIDE_TAG = new Tag("!override");
 
   private final Tag tag;
   private final Object value;
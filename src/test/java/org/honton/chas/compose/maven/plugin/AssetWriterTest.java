@@ -0,0 +1,78 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AssetWriterTest {
+
+  private static final FilterSelector COMPRESSED =
+      new FilterSelector(List.of("**/*.{gz,png}"), List.of());
+
+  @TempDir Path dir;
+
+  private Path file(String name, byte[] content) throws IOException {
+    return Files.write(dir.resolve(name), content);
+  }
+
+  /** Write the file into a jar, verify the content, and return the entry method */
+  private int method(AssetWriter writer, Path path) throws IOException {
+    String name = "app/" + path.getFileName();
+    Path jar = dir.resolve("assets.jar");
+    try (JarOutputStream stream = new JarOutputStream(Files.newOutputStream(jar))) {
+      writer.write(stream, new JarEntry(name), path);
+    }
+    try (ZipFile zip = new ZipFile(jar.toFile())) {
+      ZipEntry entry = zip.getEntry(name);
+      try (InputStream is = zip.getInputStream(entry)) {
+        // reading to the end verifies the CRC
+        Assertions.assertArrayEquals(Files.readAllBytes(path), is.readAllBytes());
+      }
+      return entry.getMethod();
+    }
+  }
+
+  @Test
+  void smallFileIsDeflated() throws IOException {
+    Path text = file("app.properties", "port=${port}\n".getBytes(StandardCharsets.UTF_8));
+    Assertions.assertEquals(ZipEntry.DEFLATED, method(new AssetWriter(COMPRESSED, 16), text));
+  }
+
+  @Test
+  void selectedFileIsStored() throws IOException {
+    Path image = file("logo.png", "not really a png".getBytes(StandardCharsets.UTF_8));
+    Assertions.assertEquals(ZipEntry.STORED, method(new AssetWriter(COMPRESSED, 1024), image));
+    Assertions.assertEquals(ZipEntry.DEFLATED, method(new AssetWriter(null, 1024), image));
+  }
+
+  @Test
+  void largeBinaryIsStored() throws IOException {
+    byte[] content = new byte[AssetWriter.HEAD_SIZE * 3];
+    Arrays.fill(content, (byte) 'x');
+    content[10] = 0;
+    Path binary = file("data.bin", content);
+    Assertions.assertEquals(ZipEntry.STORED, method(new AssetWriter(null, 1024), binary));
+    Assertions.assertEquals(ZipEntry.DEFLATED, method(new AssetWriter(null, 1 << 20), binary));
+  }
+
+  @Test
+  void largeTextIsDeflated() throws IOException {
+    byte[] content = new byte[AssetWriter.HEAD_SIZE * 3];
+    Arrays.fill(content, (byte) 'x');
+    // a NUL byte after the head does not make the file binary
+    content[AssetWriter.HEAD_SIZE + 10] = 0;
+    Path text = file("data.txt", content);
+    Assertions.assertEquals(ZipEntry.DEFLATED, method(new AssetWriter(null, 1024), text));
+  }
+}
@@ -0,0 +1,144 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ComposeAssembleTest {
+
+  @TempDir Path dir;
+
+  /** classifiers of the attached jars, in attach order */
+  private final List<String> attached = new ArrayList<>();
+
+  private ComposeAssemble assemble() {
+    MavenProject project = new MavenProject();
+    project.setGroupId("g");
+    project.setArtifactId("app");
+    project.setVersion("1");
+    project.getBuild().setDirectory(dir.resolve("target").toString());
+
+    ComposeAssemble assemble = new ComposeAssemble();
+    assemble.project = project;
+    assemble.source = dir.resolve("compose").toString();
+    assemble.attach = true;
+    assemble.threads = 4;
+    assemble.storedSize = 1 << 20;
+    assemble.compressionLevel = -1;
+    assemble.projectHelper = new AttachRecorder();
+    return assemble;
+  }
+
+  private void source(String classifier, String service, int padding) throws Exception {
+    Path directory = Files.createDirectories(dir.resolve("compose").resolve(classifier));
+    Files.writeString(
+        directory.resolve("compose.yaml"), "services: {" + service + ": {image: nginx}}\n");
+    Files.writeString(directory.resolve("padding.txt"), "x".repeat(padding));
+  }
+
+  @Test
+  void invalidCompressionLevel() {
+    ComposeAssemble assemble = new ComposeAssemble();
+    assemble.compressionLevel = 10;
+    Assertions.assertThrows(MojoExecutionException.class, assemble::doExecute);
+  }
+
+  @Test
+  void jarsAreAttachedInClassifierOrder() throws Exception {
+    List<String> classifiers = new ArrayList<>();
+    for (int i = 0; i < 12; ++i) {
+      String classifier = "c" + (char) ('a' + i);
+      classifiers.add(classifier);
+      // the first jars are the slowest to write
+      source(classifier, "service" + i, (12 - i) * 200_000);
+    }
+    assemble().doExecute();
+    Assertions.assertEquals(classifiers, attached);
+  }
+
+  @Test
+  void timestampIsSecondsOrIso() throws Exception {
+    LocalDateTime expected = LocalDateTime.of(2023, 11, 14, 22, 13, 20);
+    Assertions.assertEquals(expected, ComposeAssemble.parseTimestamp("1700000000"));
+    Assertions.assertEquals(expected, ComposeAssemble.parseTimestamp("2023-11-15T00:13:20+02:00"));
+    // a single character disables reproducible output
+    Assertions.assertNull(ComposeAssemble.parseTimestamp("a"));
+    Assertions.assertThrows(
+        MojoExecutionException.class, () -> ComposeAssemble.parseTimestamp("yesterday"));
+  }
+
+  @Test
+  void outputTimestampIsReproducible() throws Exception {
+    source("db", "db", 10);
+    ComposeAssemble assemble = assemble();
+    assemble.outputTimestamp = "1700000000";
+    assemble.doExecute();
+    Path jar = dir.resolve("target/app-1-db.jar");
+    byte[] first = Files.readAllBytes(jar);
+
+    // a fresh checkout has new modification times
+    Files.delete(jar);
+    Files.setLastModifiedTime(
+        dir.resolve("compose/db/padding.txt"), FileTime.from(Instant.now().plusSeconds(60)));
+    assemble = assemble();
+    assemble.outputTimestamp = "1700000000";
+    assemble.doExecute();
+    Assertions.assertArrayEquals(first, Files.readAllBytes(jar));
+  }
+
+  @Test
+  void unchangedJarIsAttachedWithoutWrite() throws Exception {
+    source("db", "db", 10);
+    assemble().doExecute();
+    Path jar = dir.resolve("target/app-1-db.jar");
+    FileTime written = FileTime.from(Instant.now().minusSeconds(3600));
+    Files.setLastModifiedTime(jar, written);
+
+    assemble().doExecute();
+    Assertions.assertEquals(written, Files.getLastModifiedTime(jar));
+    Assertions.assertEquals(List.of("db", "db"), attached);
+
+    // a changed source is written
+    Files.writeString(dir.resolve("compose/db/padding.txt"), "changed");
+    assemble().doExecute();
+    Assertions.assertNotEquals(written, Files.getLastModifiedTime(jar));
+  }
+
+  /** Records the classifier of each attached jar */
+  private class AttachRecorder implements MavenProjectHelper {
+
+    @Override
+    public void attachArtifact(MavenProject project, File file, String classifier) {
+      attached.add(classifier);
+    }
+
+    @Override
+    public void attachArtifact(MavenProject project, String type, File file) {
+      attached.add(null);
+    }
+
+    @Override
+    public void attachArtifact(MavenProject project, String type, String classifier, File file) {
+      attached.add(classifier);
+    }
+
+    @Override
+    public void addResource(
+        MavenProject project, String directory, List<String> includes, List<String> excludes) {}
+
+    @Override
+    public void addTestResource(
+        MavenProject project, String directory, List<String> includes, List<String> excludes) {}
+  }
+}
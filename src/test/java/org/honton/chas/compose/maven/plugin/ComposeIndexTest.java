@@ -0,0 +1,103 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import org.honton.chas.compose.maven.plugin.ComposeIndex.FileInfo;
+import org.honton.chas.compose.maven.plugin.yaml.ComposeConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+class ComposeIndexTest {
+
+  private static final Yaml PARSER = ComposeConstructor.createParser();
+
+  private static final String STATIC =
+      """
+      services:
+        web:
+          image: nginx
+          ports: ["8080:80"]
+          volumes: ["./html:/usr/share/nginx/html", "data:/data"]
+      """;
+
+  private static final String VARIABLE_PORT =
+      """
+      services:
+        web:
+          image: nginx
+          ports: ["http.port:80"]
+      """;
+
+  private static final String PLACEHOLDER =
+      """
+      services:
+        web:
+          image: nginx:${nginx.version}
+      """;
+
+  private static ComposeIndex index() {
+    ComposeIndex index = new ComposeIndex();
+    index.addCompose("app/compose.yaml", STATIC, PARSER);
+    index.addCompose("app/ports.yaml", VARIABLE_PORT, PARSER);
+    index.addCompose("app/version.yaml", PLACEHOLDER, PARSER);
+    index.addCompose("app/broken.yaml", "services: [", PARSER);
+    return index;
+  }
+
+  @Test
+  void roundTripThroughJar(@TempDir Path dir) throws Exception {
+    ComposeIndex index = index();
+    File jar = dir.resolve("app.jar").toFile();
+    try (JarOutputStream stream = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+      stream.putNextEntry(new JarEntry(ComposeIndex.INDEX_ENTRY));
+      stream.write(new Yaml().dump(index.toMap()).getBytes(StandardCharsets.UTF_8));
+      stream.closeEntry();
+    }
+    try (JarFile jarFile = new JarFile(jar)) {
+      Assertions.assertEquals(index, ComposeIndex.read(jarFile));
+    }
+  }
+
+  @Test
+  void missingIndex(@TempDir Path dir) throws Exception {
+    File jar = dir.resolve("app.jar").toFile();
+    try (JarOutputStream stream = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+      stream.putNextEntry(new JarEntry("app/compose.yaml"));
+      stream.closeEntry();
+    }
+    try (JarFile jarFile = new JarFile(jar)) {
+      Assertions.assertNull(ComposeIndex.read(jarFile));
+    }
+  }
+
+  @Test
+  void indexedMountsMatchParsedMounts() {
+    ServiceRewriter parsed = new ServiceRewriter();
+    parsed.rewrite(PARSER.load(STATIC));
+    FileInfo info = index().verbatim("app/compose.yaml", true);
+    Assertions.assertNotNull(info);
+    Assertions.assertEquals(List.copyOf(parsed.getHostMounts()), info.getMounts());
+  }
+
+  @Test
+  void verbatimOnlyWithoutParsing() {
+    ComposeIndex index = index();
+    Assertions.assertNull(index.verbatim("app/ports.yaml", false));
+    Assertions.assertNull(index.verbatim("app/version.yaml", true));
+    Assertions.assertNotNull(index.verbatim("app/version.yaml", false));
+    Assertions.assertNull(index.verbatim("app/broken.yaml", false));
+    Assertions.assertNull(index.verbatim("app/missing.yaml", false));
+    Assertions.assertEquals(
+        Map.of("placeholders", false, "variablePorts", List.of("http.port")),
+        index.getFiles().get("app/ports.yaml").toMap());
+  }
+}
@@ -0,0 +1,34 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ComposeLinkTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void circularExtendsIsBuildError() throws IOException {
+    Files.writeString(
+        dir.resolve("compose.yaml"), "services: {web: {extends: db}, db: {extends: web}}");
+    MojoExecutionException e =
+        Assertions.assertThrows(
+            MojoExecutionException.class,
+            () -> ComposeLink.mergeFiles(dir, List.of("compose.yaml"), "app"));
+    Assertions.assertTrue(e.getMessage().contains("circular"), e::getMessage);
+  }
+
+  @Test
+  void missingExtendsIsBuildError() throws IOException {
+    Files.writeString(dir.resolve("compose.yaml"), "services: {web: {extends: db}}");
+    Assertions.assertThrows(
+        MojoExecutionException.class,
+        () -> ComposeLink.mergeFiles(dir, List.of("compose.yaml"), "app"));
+  }
+}
@@ -0,0 +1,109 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.honton.chas.compose.maven.plugin.ComposeSessionCache.BatchResolver;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ComposeSessionCacheTest {
+
+  private static final List<Artifact> DB = List.of(new DefaultArtifact("g:db:jar:compose:1"));
+
+  @TempDir Path dir;
+
+  private final ComposeSessionCache cache =
+      ComposeSessionCache.of(new DefaultRepositorySystemSession());
+
+  /** Resolver which counts each artifact it resolves */
+  private static BatchResolver counting(AtomicInteger count) {
+    return artifacts -> {
+      count.addAndGet(artifacts.size());
+      return artifacts.stream().map(a -> new File(a.getArtifactId() + ".jar")).toList();
+    };
+  }
+
+  private File jar(String dependencies) throws Exception {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue(JarReader.DEPENDENCIES, dependencies);
+    Path path = dir.resolve("app.jar");
+    try (OutputStream os = Files.newOutputStream(path);
+        JarOutputStream jos = new JarOutputStream(os, manifest)) {
+      jos.flush();
+    }
+    return path.toFile();
+  }
+
+  @Test
+  void concurrentModulesResolveOnce() throws Exception {
+    AtomicInteger count = new AtomicInteger();
+    BatchResolver slow =
+        artifacts -> {
+          try {
+            Thread.sleep(50);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return counting(count).resolve(artifacts);
+        };
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<File>>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; ++i) {
+        futures.add(executor.submit(() -> cache.files(DB, "central", slow)));
+      }
+      for (Future<List<File>> future : futures) {
+        Assertions.assertEquals(List.of(new File("db.jar")), future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Assertions.assertEquals(1, count.get());
+  }
+
+  @Test
+  void repositoriesAreResolvedSeparately() throws Exception {
+    AtomicInteger count = new AtomicInteger();
+    cache.files(DB, "central", counting(count));
+    cache.files(DB, "central", counting(count));
+    Assertions.assertEquals(1, count.get());
+
+    cache.files(DB, "central,internal", counting(count));
+    Assertions.assertEquals(2, count.get());
+  }
+
+  @Test
+  void snapshotsAreNotCached() throws Exception {
+    AtomicInteger count = new AtomicInteger();
+    List<Artifact> snapshot = List.of(new DefaultArtifact("g:db:jar:compose:1-SNAPSHOT"));
+    cache.files(snapshot, "central", counting(count));
+    cache.files(snapshot, "central", counting(count));
+    Assertions.assertEquals(2, count.get());
+  }
+
+  @Test
+  void changedJarIsRead() throws Exception {
+    File file = jar("g:db:1");
+    Assertions.assertSame(cache.jar(file), cache.jar(file));
+
+    // a reactor module rebuilt the jar
+    file = jar("g:db:2,g:cache:1");
+    Assertions.assertEquals(List.of("g:db:2", "g:cache:1"), cache.jar(file).dependencies());
+  }
+}
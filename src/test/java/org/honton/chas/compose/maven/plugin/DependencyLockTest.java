@@ -0,0 +1,85 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.aether.artifact.Artifact;
+import org.honton.chas.compose.maven.plugin.DependencyResolver.Resolved;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DependencyLockTest {
+
+  @TempDir Path dir;
+
+  private FakeArtifactHelper helper() {
+    return new FakeArtifactHelper(dir).add("g:app:1", "g:db:1").add("g:db:1").add("g:db:2");
+  }
+
+  /** Resolve the graph of the roots, and write the lock */
+  private Path lock(FakeArtifactHelper helper, List<Artifact> roots) throws Exception {
+    List<Resolved> resolved =
+        new DependencyResolver(helper, new SystemStreamLog(), 1).resolve(roots);
+    Path path = dir.resolve("compose.lock");
+    DependencyLock.of(helper, roots, resolved).write(path);
+    return path;
+  }
+
+  @Test
+  void matchingLockIsOneRequest() throws Exception {
+    FakeArtifactHelper helper = helper();
+    List<Artifact> roots = ArtifactHelper.composeArtifacts(List.of("g:app:1"));
+    Path path = lock(helper, roots);
+    helper.requests.clear();
+
+    List<Resolved> resolved =
+        DependencyLock.read(path).resolve(helper, roots, new SystemStreamLog());
+    Assertions.assertEquals(
+        List.of(FakeArtifactHelper.gav("g:db:1"), FakeArtifactHelper.gav("g:app:1")),
+        resolved.stream().map(r -> r.artifact().toString()).toList());
+    Assertions.assertEquals(1, helper.requests.size());
+  }
+
+  @Test
+  void changedDependenciesIgnoreLock() throws Exception {
+    FakeArtifactHelper helper = helper();
+    Path path = lock(helper, ArtifactHelper.composeArtifacts(List.of("g:app:1")));
+
+    List<Artifact> changed = ArtifactHelper.composeArtifacts(List.of("g:app:1", "g:db:2"));
+    Assertions.assertNull(
+        DependencyLock.read(path).resolve(helper, changed, new SystemStreamLog()));
+  }
+
+  @Test
+  void changedChecksumIgnoresLock() throws Exception {
+    FakeArtifactHelper helper = helper();
+    List<Artifact> roots = ArtifactHelper.composeArtifacts(List.of("g:app:1"));
+    Path path = lock(helper, roots);
+
+    // a released artifact was replaced in the repository
+    Files.writeString(
+        path, Files.readString(path).replaceFirst("sha256: \\w+", "sha256: badc0ffee"));
+    Assertions.assertNull(DependencyLock.read(path).resolve(helper, roots, new SystemStreamLog()));
+  }
+
+  @Test
+  void changedSnapshotDependenciesIgnoreLock() throws Exception {
+    FakeArtifactHelper helper =
+        new FakeArtifactHelper(dir).add("g:app:1-SNAPSHOT", "g:db:1").add("g:db:1").add("g:db:2");
+    List<Artifact> roots = ArtifactHelper.composeArtifacts(List.of("g:app:1-SNAPSHOT"));
+    Path path = lock(helper, roots);
+    Assertions.assertNotNull(
+        DependencyLock.read(path).resolve(helper, roots, new SystemStreamLog()));
+
+    // the snapshot was rebuilt with a new dependency
+    helper.add("g:app:1-SNAPSHOT", "g:db:2");
+    Assertions.assertNull(DependencyLock.read(path).resolve(helper, roots, new SystemStreamLog()));
+  }
+
+  @Test
+  void missingLock() throws Exception {
+    Assertions.assertNull(DependencyLock.read(dir.resolve("compose.lock")));
+  }
+}
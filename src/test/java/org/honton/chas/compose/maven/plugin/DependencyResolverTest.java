@@ -0,0 +1,64 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.aether.artifact.Artifact;
+import org.honton.chas.compose.maven.plugin.DependencyResolver.Resolved;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DependencyResolverTest {
+
+  private static List<String> resolve(FakeArtifactHelper helper, String... roots) throws Exception {
+    List<Resolved> resolved =
+        new DependencyResolver(helper, new SystemStreamLog(), 2)
+            .resolve(ArtifactHelper.composeArtifacts(List.of(roots)));
+    return resolved.stream().map(Resolved::artifact).map(Artifact::toString).toList();
+  }
+
+  private static List<String> gavs(String... dependencies) {
+    return List.of(dependencies).stream().map(FakeArtifactHelper::gav).toList();
+  }
+
+  @Test
+  void highestVersionIsChosen(@TempDir Path repository) throws Exception {
+    FakeArtifactHelper helper =
+        new FakeArtifactHelper(repository)
+            .add("g:app:1", "g:db:1.2.0", "g:cache:1")
+            .add("g:cache:1", "g:db:1.10.0")
+            .add("g:db:1.2.0")
+            .add("g:db:1.10.0");
+
+    Assertions.assertEquals(
+        gavs("g:db:1.10.0", "g:cache:1", "g:app:1"), resolve(helper, "g:app:1"));
+  }
+
+  @Test
+  void dependenciesPrecedeDependents(@TempDir Path repository) throws Exception {
+    FakeArtifactHelper helper =
+        new FakeArtifactHelper(repository)
+            .add("g:web:1", "g:api:1")
+            .add("g:api:1", "g:db:1", "g:queue:1")
+            .add("g:queue:1", "g:db:1")
+            .add("g:db:1");
+
+    Assertions.assertEquals(
+        gavs("g:db:1", "g:queue:1", "g:api:1", "g:web:1"), resolve(helper, "g:web:1"));
+  }
+
+  @Test
+  void eachFrontierIsOneRequest(@TempDir Path repository) throws Exception {
+    FakeArtifactHelper helper =
+        new FakeArtifactHelper(repository)
+            .add("g:a:1", "g:b:1", "g:c:1")
+            .add("g:b:1", "g:d:1")
+            .add("g:c:1", "g:d:1")
+            .add("g:d:1");
+
+    resolve(helper, "g:a:1");
+    Assertions.assertEquals(
+        List.of(gavs("g:a:1"), gavs("g:b:1", "g:c:1"), gavs("g:d:1")), helper.requests);
+  }
+}
@@ -0,0 +1,78 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.honton.chas.compose.maven.plugin.ExtractionCache.CachedArtifact;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExtractionCacheTest {
+
+  @TempDir Path dir;
+
+  private static final Artifact APP = new DefaultArtifact("g:app:jar:compose:1");
+
+  private Path jar() throws Exception {
+    Path jar = dir.resolve("app.jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+      for (String name : new String[] {"app/compose.yaml", "app/config.txt"}) {
+        out.putNextEntry(new JarEntry(name));
+        out.write(("original " + name).getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+    }
+    return jar;
+  }
+
+  private CachedArtifact extract() throws Exception {
+    return new ExtractionCache(dir.resolve("cache")).extract(APP, jar().toFile());
+  }
+
+  @Test
+  void keyIsCoordinatesSizeAndTime() throws Exception {
+    File jar = jar().toFile();
+    String key = ExtractionCache.key(APP, jar);
+    Assertions.assertEquals(key, ExtractionCache.key(APP, jar));
+    Assertions.assertNotEquals(
+        key, ExtractionCache.key(new DefaultArtifact("g:app:jar:compose:2"), jar));
+
+    // the jar was downloaded again
+    Assertions.assertTrue(jar.setLastModified(jar.lastModified() - 60_000));
+    Assertions.assertNotEquals(key, ExtractionCache.key(APP, jar));
+  }
+
+  @Test
+  void copiedEntryIsIndependentOfCache() throws Exception {
+    CachedArtifact cached = extract();
+    Path config = dir.resolve("config.txt");
+    cached.copyTo("app/config.txt", config);
+
+    try (OutputStream out = Files.newOutputStream(config)) {
+      out.write("written by container".getBytes(StandardCharsets.UTF_8));
+    }
+    Assertions.assertEquals(
+        "original app/config.txt", Files.readString(cached.directory().resolve("app/config.txt")));
+  }
+
+  @Test
+  void linkedEntryIsReadOnly() throws Exception {
+    CachedArtifact cached = extract();
+    Path compose = dir.resolve("compose.yaml");
+    cached.linkTo("app/compose.yaml", compose);
+
+    Assertions.assertEquals("original app/compose.yaml", Files.readString(compose));
+    if (cached.links()) {
+      Assertions.assertFalse(
+          Files.getPosixFilePermissions(compose).contains(PosixFilePermission.OWNER_WRITE));
+    }
+  }
+}
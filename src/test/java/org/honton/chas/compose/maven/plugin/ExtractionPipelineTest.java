@@ -0,0 +1,89 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExtractionPipelineTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void turnsFollowSubmissionOrder() throws Exception {
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    try (ExtractionPipeline pipeline = new ExtractionPipeline(4)) {
+      for (int i = 0; i < 8; ++i) {
+        int task = i;
+        pipeline.submit(
+            dir.resolve("file" + i),
+            true,
+            turn -> {
+              // earlier tasks are slower before their turn
+              sleep(40L * (8 - task));
+              turn.await();
+              order.add(task);
+              turn.release();
+            });
+      }
+      pipeline.await();
+    }
+    Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7), order);
+  }
+
+  @Test
+  void writesToOnePathAreSerialized() throws Exception {
+    Path destination = dir.resolve("compose.yaml");
+    try (ExtractionPipeline pipeline = new ExtractionPipeline(4)) {
+      pipeline.submit(
+          destination,
+          false,
+          turn -> {
+            sleep(200);
+            Files.writeString(destination, "first");
+          });
+      pipeline.submit(
+          destination,
+          false,
+          turn -> {
+            Assertions.assertEquals("first", Files.readString(destination));
+            Files.writeString(destination, "second");
+          });
+      pipeline.await();
+    }
+    Assertions.assertEquals("second", Files.readString(destination));
+  }
+
+  @Test
+  void firstFailureIsReported() throws Exception {
+    try (ExtractionPipeline pipeline = new ExtractionPipeline(2)) {
+      pipeline.submit(
+          dir.resolve("a"),
+          false,
+          turn -> {
+            throw new IOException("a failed");
+          });
+      pipeline.submit(
+          dir.resolve("b"),
+          false,
+          turn -> {
+            throw new IllegalStateException("b failed");
+          });
+      IOException e = Assertions.assertThrows(IOException.class, pipeline::await);
+      Assertions.assertEquals("a failed", e.getMessage());
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
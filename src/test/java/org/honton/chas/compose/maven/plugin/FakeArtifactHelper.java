@@ -0,0 +1,70 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.aether.artifact.Artifact;
+import org.honton.chas.compose.maven.plugin.JarReader.JarFacts;
+
+/** Repository of compose artifacts whose jars only hold their gav and direct dependencies */
+class FakeArtifactHelper extends ArtifactHelper {
+
+  private final Path repository;
+  private final Map<String, List<String>> graph = new HashMap<>();
+
+  /** The gav of each artifact fetched, by request */
+  final List<List<String>> requests = new ArrayList<>();
+
+  FakeArtifactHelper(Path repository) {
+    super(null, null, null, null);
+    this.repository = repository;
+  }
+
+  /**
+   * Add an artifact to the repository
+   *
+   * @param dependency The artifact, in `Group:Artifact:Version` form
+   * @param dependencies The direct dependencies of the artifact
+   * @return this
+   */
+  FakeArtifactHelper add(String dependency, String... dependencies) {
+    graph.put(gav(dependency), List.of(dependencies));
+    return this;
+  }
+
+  static String gav(String dependency) {
+    return ArtifactHelper.composeArtifact(dependency).toString();
+  }
+
+  @Override
+  List<File> fetchArtifacts(List<Artifact> artifacts) {
+    List<String> request = artifacts.stream().map(Artifact::toString).toList();
+    requests.add(request);
+    return request.stream().map(this::file).toList();
+  }
+
+  private File file(String gav) {
+    if (!graph.containsKey(gav)) {
+      throw new IllegalArgumentException(gav + " is not in the repository");
+    }
+    Path path = repository.resolve(gav.replace(':', '_'));
+    try {
+      Files.writeString(path, gav);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return path.toFile();
+  }
+
+  @Override
+  JarFacts readJar(File file) throws IOException {
+    String gav = Files.readString(file.toPath());
+    return new JarFacts(List.of(), graph.get(gav), null);
+  }
+}
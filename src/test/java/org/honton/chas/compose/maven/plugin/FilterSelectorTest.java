@@ -0,0 +1,23 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FilterSelectorTest {
+
+  @Test
+  void emptyIncludesSelectAll() {
+    FilterSelector selector = new FilterSelector(List.of(), null);
+    Assertions.assertTrue(selector.matches("app/config.txt"));
+    Assertions.assertTrue(selector.matches("compose.yaml"));
+  }
+
+  @Test
+  void excludesWin() {
+    FilterSelector selector = new FilterSelector(List.of("**/*.sql"), List.of("**/seed/*"));
+    Assertions.assertTrue(selector.matches("db/init/schema.sql"));
+    Assertions.assertFalse(selector.matches("db/seed/data.sql"));
+    Assertions.assertFalse(selector.matches("db/init/schema.txt"));
+  }
+}
@@ -0,0 +1,74 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+import org.codehaus.plexus.interpolation.InterpolatorFilterReader;
+import org.codehaus.plexus.interpolation.PropertiesBasedValueSource;
+import org.codehaus.plexus.interpolation.StringSearchInterpolator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Compares {@link FilterTemplate} with the {@link InterpolatorFilterReader} it replaced */
+class FilterTemplateTest {
+
+  private static final String[] FRAGMENTS = {
+    "a", "$", "{", "}", "\\", "${x}", "\\${x}", "${missing}", "${empty}", "${nested}", "${x", "\n"
+  };
+
+  private static StringSearchInterpolator interpolator() {
+    Properties properties = new Properties();
+    properties.setProperty("x", "value");
+    properties.setProperty("empty", "");
+    properties.setProperty("nested", "[${x}]");
+    StringSearchInterpolator interpolator = new StringSearchInterpolator();
+    interpolator.setEscapeString("\\");
+    interpolator.addValueSource(new PropertiesBasedValueSource(properties));
+    return interpolator;
+  }
+
+  private static String filterReader(StringSearchInterpolator interpolator, String content)
+      throws IOException {
+    StringWriter writer = new StringWriter();
+    new InterpolatorFilterReader(new StringReader(content), interpolator).transferTo(writer);
+    return writer.toString();
+  }
+
+  private static void compare(StringSearchInterpolator interpolator, String content)
+      throws IOException {
+    Assertions.assertEquals(
+        filterReader(interpolator, content),
+        FilterTemplate.compile(content).render(interpolator),
+        content);
+  }
+
+  @Test
+  void combinations() throws IOException {
+    StringSearchInterpolator interpolator = interpolator();
+    for (String first : FRAGMENTS) {
+      for (String second : FRAGMENTS) {
+        for (String third : FRAGMENTS) {
+          for (String fourth : FRAGMENTS) {
+            compare(interpolator, first + second + third + fourth);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void document() throws IOException {
+    compare(
+        interpolator(),
+        """
+        services:
+          app:
+            image: repo/app:${x}
+            command: echo \\${x} $$HOME ${missing:-default}
+            environment:
+              EMPTY: "${empty}"
+              NESTED: ${nested}
+        """);
+  }
+}
@@ -0,0 +1,163 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HealthCheckTest {
+
+  private static HealthCheck healthCheck(String name, String test, String timeout) {
+    return HealthCheck.fromMap(name, Map.of("test", test, "timeout", timeout, "interval", "1s"));
+  }
+
+  private static Process run(HealthCheck healthCheck) throws IOException {
+    List<String> command = healthCheck.getTest();
+    return new ProcessBuilder(command).start();
+  }
+
+  @Test
+  void slowProbeDoesNotDelayOthers() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ProbeLimiter limiter = new ProbeLimiter(2);
+      HealthCheck slow = healthCheck("slow", "sleep 3", "10s");
+      HealthCheck fast = healthCheck("fast", "true", "10s");
+
+      CompletableFuture<HealthCheck> slowFuture =
+          slow.submit(scheduler, limiter, HealthCheckTest::run);
+      CompletableFuture<HealthCheck> fastFuture =
+          fast.submit(scheduler, limiter, HealthCheckTest::run);
+
+      Assertions.assertEquals(Boolean.TRUE, fastFuture.get(2, TimeUnit.SECONDS).getHealthy());
+      Assertions.assertFalse(slowFuture.isDone());
+      Assertions.assertEquals(Boolean.TRUE, slowFuture.get(10, TimeUnit.SECONDS).getHealthy());
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  void probeTimesOut() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      HealthCheck hung = healthCheck("hung", "sleep 30", "200ms");
+      HealthCheck result =
+          hung.submit(scheduler, new ProbeLimiter(1), HealthCheckTest::run)
+              .get(5, TimeUnit.SECONDS);
+      Assertions.assertEquals(Boolean.FALSE, result.getHealthy());
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  void probesAreDenseAroundExpectedTime() {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      HealthCheck check =
+          healthCheck("learned", "true", "1s").setEstimate(new HealthHistory.Estimate(2000, 100));
+      List<Long> offsets = new ArrayList<>();
+      while (check.getRetries() == 3) {
+        offsets.add(check.getNextCheck());
+        check.submit(
+            scheduler,
+            new ProbeLimiter(1),
+            hc -> {
+              throw new IOException("not started");
+            });
+      }
+
+      long inWindow = offsets.stream().filter(o -> o >= 1750 && o <= 2250).count();
+      Assertions.assertTrue(inWindow >= 5, offsets::toString);
+      for (int i = 1; i < offsets.size(); ++i) {
+        Assertions.assertTrue(offsets.get(i) - offsets.get(i - 1) <= 1000, offsets::toString);
+      }
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  void reportSkipsPendingProbe() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      HealthCheck check = healthCheck("reported", "false", "1s");
+      CompletableFuture<HealthCheck> pending = new CompletableFuture<>();
+      scheduler.execute(() -> pending.join());
+      CompletableFuture<HealthCheck> future =
+          check.submit(
+              scheduler,
+              new ProbeLimiter(1),
+              hc -> {
+                throw new IOException("probe should not start");
+              });
+      Assertions.assertTrue(check.report(true));
+      pending.complete(check);
+      Assertions.assertEquals(Boolean.TRUE, future.get(5, TimeUnit.SECONDS).getHealthy());
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  void firstProbeApproachesExpectedTime() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      long started = System.currentTimeMillis();
+      HealthCheck check =
+          HealthCheck.fromMap("learned", Map.of("test", "true", "interval", "10s"))
+              .setEstimate(new HealthHistory.Estimate(8000, 100))
+              .setStartCheck(started);
+      CompletableFuture<Long> launched = new CompletableFuture<>();
+      check.submit(
+          scheduler,
+          new ProbeLimiter(1),
+          hc -> {
+            launched.complete(System.currentTimeMillis());
+            throw new IOException("not started");
+          });
+      Assertions.assertTrue(launched.get(5, TimeUnit.SECONDS) - started >= 900);
+      Assertions.assertEquals(started, check.getStartCheck());
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  void probesAfterExpectedTimeCountAsRetries() {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      HealthCheck check =
+          healthCheck("learned", "false", "1s").setEstimate(new HealthHistory.Estimate(2000, 100));
+      long firstCounted = -1;
+      for (int probes = 0; check.getHealthy() == null; ++probes) {
+        Assertions.assertTrue(probes < 100, "retries are never exhausted");
+        int retries = check.getRetries();
+        long offset = check.getNextCheck();
+        check.submit(
+            scheduler,
+            new ProbeLimiter(1),
+            hc -> {
+              throw new IOException("not started");
+            });
+        if (firstCounted < 0 && check.getRetries() < retries) {
+          firstCounted = offset;
+        }
+      }
+      Assertions.assertEquals(Boolean.FALSE, check.getHealthy());
+      // probes approaching and within the window, which ends at 2250, do not count; the backoff
+      // probes after the window do
+      long counted = firstCounted;
+      Assertions.assertTrue(counted >= 2250 && counted < 3000, () -> Long.toString(counted));
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HealthEventsTest {
+
+  private static String event(String service, String action) {
+    return event(service, action, "4f2a", "");
+  }
+
+  private static String event(String service, String action, String id, String exitCode) {
+    return "{\"action\":\""
+        + action
+        + "\",\"attributes\":{"
+        + exitCode
+        + "\"image\":\"alpine\"},\"id\":\""
+        + id
+        + "\",\"service\":\""
+        + service
+        + "\",\"time\":\"2024-05-01T12:00:00.000000Z\",\"type\":\"container\"}";
+  }
+
+  private static String exitCode(int code) {
+    return "\"exitCode\":\"" + code + "\",";
+  }
+
+  @Test
+  void healthStatus() {
+    HealthEvents events = new HealthEvents(false);
+    List<String> reports = new ArrayList<>();
+    events.setListener((service, healthy) -> reports.add(service + '=' + healthy));
+
+    events.accept(event("db", "start"));
+    events.accept(event("db", "health_status: starting"));
+    events.accept("not json {");
+    events.accept(event("db", "health_status: healthy"));
+    events.accept(event("web", "health_status: unhealthy"));
+
+    Assertions.assertEquals(List.of("db=true", "web=false"), reports);
+    Assertions.assertEquals(Boolean.TRUE, events.getStatus("db"));
+    Assertions.assertEquals(Boolean.FALSE, events.getStatus("web"));
+    Assertions.assertNull(events.getStatus("cache"));
+  }
+
+  @Test
+  void dieAfterStart() {
+    HealthEvents events = new HealthEvents(true);
+    // a container running before watching is replaced
+    events.accept(event("db", "die", "old", exitCode(137)));
+    events.accept(event("db", "start", "new", ""));
+    events.accept(event("init", "start", "once", ""));
+    events.accept(event("init", "die", "once", exitCode(0)));
+    Assertions.assertNull(events.getFailure());
+
+    events.accept(event("db", "die", "new", exitCode(3)));
+    Assertions.assertEquals("Service db exited with code 3", events.getFailure());
+    Assertions.assertEquals("db", events.getFailedService());
+  }
+
+  @Test
+  void restartLoop() {
+    HealthEvents events = new HealthEvents(true);
+    for (int i = 0; i < 3; ++i) {
+      events.accept(event("web", "start", "c1", ""));
+    }
+    Assertions.assertNull(events.getFailure());
+    events.accept(event("web", "start", "c1", ""));
+    Assertions.assertEquals("Service web restarted 3 times", events.getFailure());
+  }
+
+  @Test
+  void oomIgnoredWithoutFailFast() {
+    HealthEvents events = new HealthEvents(false);
+    events.accept(event("web", "oom"));
+    Assertions.assertNull(events.getFailure());
+  }
+}
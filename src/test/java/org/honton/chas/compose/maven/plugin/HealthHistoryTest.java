@@ -0,0 +1,26 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HealthHistoryTest {
+
+  @Test
+  void learnsAcrossBuilds(@TempDir Path dir) throws Exception {
+    Path path = dir.resolve("history/project.yaml");
+    HealthHistory first = HealthHistory.read(path);
+    Assertions.assertNull(first.get("db"));
+    first.record("db", 4000);
+    first.write();
+
+    HealthHistory second = HealthHistory.read(path);
+    Assertions.assertEquals(new HealthHistory.Estimate(4000, 1000), second.get("db"));
+    second.record("db", 2000);
+    second.write();
+
+    Assertions.assertEquals(
+        new HealthHistory.Estimate(3400, 1300), HealthHistory.read(path).get("db"));
+  }
+}
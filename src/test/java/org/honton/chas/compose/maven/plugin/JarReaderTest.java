@@ -0,0 +1,78 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.honton.chas.compose.maven.plugin.JarReader.JarFacts;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JarReaderTest {
+
+  @TempDir Path dir;
+
+  private File jar(Manifest manifest, String... names) throws Exception {
+    Path path = dir.resolve("app.jar");
+    try (OutputStream os = Files.newOutputStream(path);
+        JarOutputStream jos =
+            manifest != null ? new JarOutputStream(os, manifest) : new JarOutputStream(os)) {
+      for (String name : names) {
+        jos.putNextEntry(new JarEntry(name));
+        jos.closeEntry();
+      }
+    }
+    return path.toFile();
+  }
+
+  @Test
+  void factsAreReadFromManifest() throws Exception {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue(JarReader.SERVICES, "web,db");
+    manifest.getMainAttributes().putValue(JarReader.DEPENDENCIES, "g:cache:jar:compose:1");
+
+    JarFacts facts = JarReader.readFacts(jar(manifest, "app/compose.yaml"));
+    Assertions.assertEquals(List.of("web", "db"), facts.services());
+    Assertions.assertEquals(List.of("g:cache:jar:compose:1"), facts.dependencies());
+    Assertions.assertNull(facts.index());
+  }
+
+  @Test
+  void missingManifestHasNoFacts() throws Exception {
+    JarFacts facts = JarReader.readFacts(jar(null, "app/compose.yaml"));
+    Assertions.assertEquals(List.of(), facts.services());
+    Assertions.assertEquals(List.of(), facts.dependencies());
+  }
+
+  @Test
+  void metaInfEntriesAreSkipped() throws Exception {
+    File file =
+        jar(
+            new Manifest(),
+            ComposeIndex.INDEX_ENTRY,
+            "META-INF/maven/g/app/pom.xml",
+            "app/compose.yaml",
+            "app/META-INF.txt");
+    List<String> visited = new ArrayList<>();
+    try (JarReader reader =
+        new JarReader(file) {
+          @Override
+          void process() {
+            if (!isMetaInfEntry()) {
+              visited.add(getName());
+            }
+          }
+        }) {
+      reader.visitEntries();
+    }
+    Assertions.assertEquals(List.of("app/compose.yaml", "app/META-INF.txt"), visited);
+  }
+}
@@ -0,0 +1,80 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import org.codehaus.plexus.interpolation.PropertiesBasedValueSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+class LinkFingerprintTest {
+
+  @TempDir Path dir;
+
+  private static RecordingInterpolator interpolator(String version) {
+    Properties properties = new Properties();
+    properties.setProperty("version", version);
+    properties.setProperty("unused", "value");
+    RecordingInterpolator interpolator = new RecordingInterpolator();
+    interpolator.addValueSource(new PropertiesBasedValueSource(properties));
+    return interpolator;
+  }
+
+  private LinkFingerprint fingerprint() throws Exception {
+    return new LinkFingerprint(dir.resolve("link-fingerprint.yaml"), new Yaml())
+        .add("config")
+        .addTree(dir.resolve("src"));
+  }
+
+  /** Link with the interpolator, recording the given expressions */
+  private void link(RecordingInterpolator interpolator, String... expressions) throws Exception {
+    for (String expression : expressions) {
+      interpolator.interpolate(expression);
+    }
+    fingerprint().write(interpolator.getRecorded());
+  }
+
+  @Test
+  void unchangedRebuildSkips() throws Exception {
+    Files.createDirectories(dir.resolve("src"));
+    Files.writeString(dir.resolve("src/compose.yaml"), "services: {}");
+    link(interpolator("1.0"), "${version}");
+
+    Assertions.assertTrue(fingerprint().isCurrent(interpolator("1.0")));
+  }
+
+  @Test
+  void propertyChangeInvalidates() throws Exception {
+    link(interpolator("1.0"), "${version}");
+
+    Assertions.assertFalse(fingerprint().isCurrent(interpolator("1.1")));
+  }
+
+  @Test
+  void sourceEditInvalidates() throws Exception {
+    Files.createDirectories(dir.resolve("src"));
+    Files.writeString(dir.resolve("src/compose.yaml"), "services: {}");
+    link(interpolator("1.0"), "${version}");
+
+    Files.writeString(dir.resolve("src/compose.yaml"), "services: {db: {}}");
+    Assertions.assertFalse(fingerprint().isCurrent(interpolator("1.0")));
+  }
+
+  @Test
+  void checkDoesNotRecordPriorExpressions() throws Exception {
+    link(interpolator("1.0"), "${version}", "${unused}");
+
+    RecordingInterpolator next = interpolator("1.0");
+    Assertions.assertTrue(fingerprint().isCurrent(next));
+    link(next, "${version}");
+
+    Assertions.assertEquals(
+        Map.of("${version}", "1.0"),
+        new Yaml()
+            .<Map<String, Object>>load(Files.readString(dir.resolve("link-fingerprint.yaml")))
+            .get("properties"));
+  }
+}
@@ -0,0 +1,47 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PlaceholderScannerTest {
+
+  private static PlaceholderScanner scan(byte[] content) throws IOException {
+    PlaceholderScanner scanner = new PlaceholderScanner(new ByteArrayInputStream(content));
+    Assertions.assertArrayEquals(content, scanner.readAllBytes());
+    return scanner;
+  }
+
+  private static PlaceholderScanner scan(String content) throws IOException {
+    return scan(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void placeholderIsFilterable() throws IOException {
+    Assertions.assertTrue(scan("url=${db.url}\n").isFilterable());
+    Assertions.assertFalse(scan("cost=$5 {each}\n").isFilterable());
+  }
+
+  @Test
+  void binaryIsNotFilterable() throws IOException {
+    PlaceholderScanner scanner = scan(new byte[] {'$', '{', 'x', '}', 0});
+    Assertions.assertTrue(scanner.isBinary());
+    Assertions.assertFalse(scanner.isFilterable());
+  }
+
+  @Test
+  void placeholderAcrossReads() throws IOException {
+    byte[] content = "a${b}".getBytes(StandardCharsets.UTF_8);
+    PlaceholderScanner scanner = new PlaceholderScanner(new ByteArrayInputStream(content));
+    // the $ and the { arrive in different reads
+    byte[] buffer = new byte[2];
+    int total = 0;
+    for (int read; (read = scanner.read(buffer, 0, buffer.length)) >= 0; ) {
+      total += read;
+    }
+    Assertions.assertEquals(content.length, total);
+    Assertions.assertTrue(scanner.isFilterable());
+  }
+}
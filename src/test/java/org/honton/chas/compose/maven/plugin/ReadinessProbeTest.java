@@ -0,0 +1,60 @@
+package org.honton.chas.compose.maven.plugin;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ReadinessProbeTest {
+
+  private static InetSocketAddress loopback(int port) {
+    return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+  }
+
+  private static int unusedPort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  @Test
+  void tcpAndHttp() throws IOException {
+    HttpServer server = HttpServer.create(loopback(0), 0);
+    server.createContext(
+        "/ready",
+        exchange -> {
+          exchange.sendResponseHeaders(204, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/starting",
+        exchange -> {
+          exchange.sendResponseHeaders(503, -1);
+          exchange.close();
+        });
+    server.start();
+    try (ServerSocket listening = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      int http = server.getAddress().getPort();
+      int closed = unusedPort();
+      List<ReadinessProbe.Target> targets =
+          List.of(
+              new ReadinessProbe.Target("tcp", loopback(listening.getLocalPort()), null),
+              new ReadinessProbe.Target(
+                  "ready", loopback(http), URI.create("http://localhost:" + http + "/ready")),
+              new ReadinessProbe.Target(
+                  "starting", loopback(http), URI.create("http://localhost:" + http + "/starting")),
+              new ReadinessProbe.Target("closed", loopback(closed), null));
+
+      Set<String> notReady = new ReadinessProbe().await(targets, System.currentTimeMillis() + 1500);
+      Assertions.assertEquals(Set.of("starting", "closed"), notReady);
+    } finally {
+      server.stop(0);
+    }
+  }
+}
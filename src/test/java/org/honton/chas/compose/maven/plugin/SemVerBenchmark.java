@@ -0,0 +1,74 @@
+package org.honton.chas.compose.maven.plugin;
+
+/**
+ * Compares the parse and compare costs of {@link SemVer} with the regular expression implementation
+ * it replaced. Parsing bypasses interning, and each parsed version is distinct. Not a unit test;
+ * run with {@code java -cp target/classes:target/test-classes
+ * org.honton.chas.compose.maven.plugin.SemVerBenchmark}
+ */
+class SemVerBenchmark {
+
+  private static final String[] SHAPES = {
+    "%d.0.0-alpha", "1.%d.0-alpha.1", "1.0.%d-beta.11", "%d.0.0-rc.1", "1.%d.0", "1.10.%d", "%d.3.4"
+  };
+  private static final int ROUNDS = 200_000;
+
+  private static String[] versions() {
+    String[] versions = new String[ROUNDS];
+    for (int r = 0; r < ROUNDS; ++r) {
+      versions[r] = String.format(SHAPES[r % SHAPES.length], r);
+    }
+    return versions;
+  }
+
+  private static long time(Runnable runnable) {
+    runnable.run(); // warm up
+    long start = System.nanoTime();
+    runnable.run();
+    return (System.nanoTime() - start) / ROUNDS;
+  }
+
+  public static void main(String[] args) {
+    String[] versions = versions();
+    int[] sink = new int[1];
+    long referenceParse =
+        time(
+            () -> {
+              for (String version : versions) {
+                sink[0] += SemVerReference.valueOf(version).getMajor();
+              }
+            });
+    long parse =
+        time(
+            () -> {
+              for (String version : versions) {
+                sink[0] += SemVer.parse(version).getMajor();
+              }
+            });
+
+    SemVerReference[] references = new SemVerReference[SHAPES.length];
+    SemVer[] semVers = new SemVer[SHAPES.length];
+    for (int i = 0; i < SHAPES.length; ++i) {
+      references[i] = SemVerReference.valueOf(versions[i]);
+      semVers[i] = SemVer.parse(versions[i]);
+    }
+    long referenceCompare =
+        time(
+            () -> {
+              for (int r = 0; r < ROUNDS; ++r) {
+                sink[0] +=
+                    references[r % SHAPES.length].compareTo(references[(r + 1) % SHAPES.length]);
+              }
+            });
+    long compare =
+        time(
+            () -> {
+              for (int r = 0; r < ROUNDS; ++r) {
+                sink[0] += semVers[r % SHAPES.length].compareTo(semVers[(r + 1) % SHAPES.length]);
+              }
+            });
+    System.out.printf(
+        "parse: %d ns/op, reference %d ns/op; compareTo: %d ns/op, reference %d ns/op (%d)%n",
+        parse, referenceParse, compare, referenceCompare, sink[0]);
+  }
+}
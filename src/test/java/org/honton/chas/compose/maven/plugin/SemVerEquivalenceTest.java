@@ -0,0 +1,127 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Compares {@link SemVer} with the regular expression implementation it replaced */
+class SemVerEquivalenceTest {
+
+  private static final String[] ORDINALS = {
+    "0", "1", "01", "1.0", "1.10", "1.9.0", "1.0.0.1", "2147483647", "2147483648", "1.", ".1", ""
+  };
+  private static final String[] PRE_RELEASES = {
+    "",
+    "-",
+    "-alpha",
+    "-alpha.1",
+    "-alpha.beta",
+    "-beta.2",
+    "-beta.11",
+    "-rc.1",
+    "-11a",
+    "-0",
+    "-01",
+    "-1-",
+    "--1",
+    "-a..b",
+    "-.a",
+    "-a.",
+    "-2147483648",
+    "-SNAPSHOT",
+    "-a_b"
+  };
+  private static final String[] METADATA = {"", "+", "+meta", "+exp.sha.5114f85", "+a+b", "\n"};
+
+  private static List<String> corpus() {
+    List<String> corpus = new ArrayList<>();
+    for (String ordinals : ORDINALS) {
+      for (String preRelease : PRE_RELEASES) {
+        for (String metadata : METADATA) {
+          corpus.add(ordinals + preRelease + metadata);
+        }
+      }
+    }
+    corpus.add("1.0\r\n");
+    corpus.add("1.0\n\n");
+    corpus.add("version");
+    return corpus;
+  }
+
+  private static <T> Object outcome(Supplier<T> supplier) {
+    try {
+      return supplier.get();
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object compare(IntSupplier comparison) {
+    try {
+      return comparison.getAsInt();
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static String describe(SemVer v) {
+    return v.getVersion()
+        + '|'
+        + v.getMajor()
+        + '|'
+        + v.getMinor()
+        + '|'
+        + v.getPatch()
+        + '|'
+        + v.getPreRelease()
+        + '|'
+        + v.getMetadata();
+  }
+
+  private static String describe(SemVerReference v) {
+    return v.getVersion()
+        + '|'
+        + v.getMajor()
+        + '|'
+        + v.getMinor()
+        + '|'
+        + v.getPatch()
+        + '|'
+        + v.getPreRelease()
+        + '|'
+        + v.getMetadata();
+  }
+
+  @Test
+  void sameParse() {
+    for (String version : corpus()) {
+      Assertions.assertEquals(
+          outcome(() -> describe(SemVerReference.valueOf(version))),
+          outcome(() -> describe(SemVer.valueOf(version))),
+          version);
+    }
+  }
+
+  @Test
+  void sameCompare() {
+    List<String> proper =
+        corpus().stream()
+            .filter(v -> !(outcome(() -> SemVerReference.valueOf(v)) instanceof Class))
+            .toList();
+    for (String left : proper) {
+      SemVerReference expectedLeft = SemVerReference.valueOf(left);
+      SemVer actualLeft = SemVer.valueOf(left);
+      for (String right : proper) {
+        SemVerReference expectedRight = SemVerReference.valueOf(right);
+        SemVer actualRight = SemVer.valueOf(right);
+        Assertions.assertEquals(
+            compare(() -> expectedLeft.compareTo(expectedRight)),
+            compare(() -> actualLeft.compareTo(actualRight)),
+            left + " <=> " + right);
+      }
+    }
+  }
+}
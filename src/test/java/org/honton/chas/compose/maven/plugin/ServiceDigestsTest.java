@@ -0,0 +1,80 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+class ServiceDigestsTest {
+
+  private static Map<String, String> digests(String services) {
+    return ServiceDigests.digests("base", new Yaml().load(services));
+  }
+
+  @Test
+  void changePropagatesToDependants() {
+    Map<String, String> before =
+        digests(
+            "{db: {image: a}, web: {image: b, depends_on: [db]},"
+                + " api: {image: c, depends_on: {web: {condition: service_healthy}}},"
+                + " other: {image: d}}");
+    Map<String, String> after =
+        digests(
+            "{db: {image: z}, web: {image: b, depends_on: [db]},"
+                + " api: {image: c, depends_on: {web: {condition: service_healthy}}},"
+                + " other: {image: d}}");
+    Assertions.assertNotEquals(before.get("db"), after.get("db"));
+    Assertions.assertNotEquals(before.get("web"), after.get("web"));
+    Assertions.assertNotEquals(before.get("api"), after.get("api"));
+    Assertions.assertEquals(before.get("other"), after.get("other"));
+  }
+
+  @Test
+  void baseChangesEveryService() {
+    Map<?, ?> services = new Yaml().load("{db: {image: a}}");
+    Assertions.assertNotEquals(
+        ServiceDigests.digests("one", services), ServiceDigests.digests("two", services));
+  }
+
+  @Test
+  void circularDependsOn() {
+    Map<String, String> digests =
+        digests("{a: {depends_on: [b]}, b: {depends_on: [a]}, c: {depends_on: [missing]}}");
+    Assertions.assertEquals(Set.of("a", "b", "c"), digests.keySet());
+  }
+
+  @Test
+  void changedFromLabels() {
+    Map<String, String> digests = Map.of("db", "1", "web", "2", "api", "3", "other", "4");
+    String label = ComposeLogsGoal.INPUTS_LABEL;
+    String ps =
+        String.join(
+            "\n",
+            "db com.docker.compose.project=p," + label + "=1",
+            "web " + label + "=1,com.docker.compose.project=p",
+            "api " + label + "=3",
+            "api " + label + "=old",
+            "other " + label + "=4,x=y",
+            "");
+    Assertions.assertEquals(Set.of("web", "api"), ServiceDigests.changed(digests, ps));
+  }
+
+  @Test
+  void exitedOneShotIsUnchanged() {
+    Map<String, String> digests = Map.of("migrate", "1", "db", "2");
+    String label = ComposeLogsGoal.INPUTS_LABEL;
+    // `ps --all` lists the exited migration job with the same labels as a running container
+    String ps = "db " + label + "=2\nmigrate com.docker.compose.oneoff=False," + label + "=1\n";
+    Assertions.assertEquals(Set.of(), ServiceDigests.changed(digests, ps));
+  }
+
+  @Test
+  void missingContainersAreChanged() {
+    Map<String, String> digests = Map.of("db", "1", "web", "2");
+    Assertions.assertEquals(
+        Set.of("web"),
+        ServiceDigests.changed(digests, "db " + ComposeLogsGoal.INPUTS_LABEL + "=1"));
+    Assertions.assertEquals(Set.of("db", "web"), ServiceDigests.changed(digests, ""));
+  }
+}
@@ -0,0 +1,43 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ServiceHealthTest {
+
+  private static String container(String service, String health) {
+    return "{\"ID\":\"4f2a\",\"Name\":\"app-"
+        + service
+        + "-1\",\"Service\":\""
+        + service
+        + "\",\"State\":\"running\",\"Health\":\""
+        + health
+        + "\",\"ExitCode\":0}";
+  }
+
+  @Test
+  void jsonLines() {
+    String output =
+        String.join(
+            "\n",
+            container("db", "healthy"),
+            container("web", "unhealthy"),
+            container("cache", "starting"),
+            container("worker", ""),
+            container("api", "healthy"),
+            container("api", "starting"));
+    Assertions.assertEquals(Map.of("db", true, "web", false), ServiceHealth.parse(output));
+  }
+
+  @Test
+  void jsonArray() {
+    String output = "[" + container("db", "healthy") + "," + container("web", "unhealthy") + "]\n";
+    Assertions.assertEquals(Map.of("db", true, "web", false), ServiceHealth.parse(output));
+  }
+
+  @Test
+  void empty() {
+    Assertions.assertEquals(Map.of(), ServiceHealth.parse(""));
+  }
+}
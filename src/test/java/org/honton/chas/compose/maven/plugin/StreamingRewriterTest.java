@@ -0,0 +1,114 @@
+package org.honton.chas.compose.maven.plugin;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+import org.honton.chas.compose.maven.plugin.yaml.ComposeRepresenter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+class StreamingRewriterTest {
+
+  private static String stream(String text, ServiceRewriter rewriter) throws Exception {
+    StringWriter writer = new StringWriter();
+    new StreamingRewriter(rewriter, () -> {}).rewrite(new StringReader(text), writer, false);
+    return writer.toString();
+  }
+
+  private static String loadDump(String text, ServiceRewriter rewriter) {
+    DumperOptions options = new DumperOptions();
+    options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+    Yaml yaml = ComposeRepresenter.createDumper(options);
+    Map<String, Object> model = yaml.load(text);
+    rewriter.rewrite(model);
+    return yaml.dump(model);
+  }
+
+  /** Rewrite in both modes, and check the results are the same model */
+  private static String assertSameAsLoadDump(String text) throws Exception {
+    Assertions.assertTrue(StreamingRewriter.isStreamable(text));
+    ServiceRewriter streaming = new ServiceRewriter();
+    ServiceRewriter loaded = new ServiceRewriter();
+    String streamed = stream(text, streaming);
+    Object expected = new Yaml().load(loadDump(text, loaded));
+    Assertions.assertEquals(expected, new Yaml().load(streamed), streamed);
+    Assertions.assertEquals(loaded.getVariablePorts(), streaming.getVariablePorts());
+    Assertions.assertEquals(loaded.getHostMounts(), streaming.getHostMounts());
+    return streamed;
+  }
+
+  @Test
+  void shortAndLongPorts() throws Exception {
+    String streamed =
+        assertSameAsLoadDump(
+            """
+            # project comment
+            services:
+              web:
+                image: nginx # inline comment
+                ports:
+                  # http
+                  - "web.port:80"
+                  - "127.0.0.1:8443:443/tcp"
+                  - target: 9000
+                    published: ${admin.port}
+                  - 7000
+                volumes:
+                  - ./data:/data
+                  - type: bind
+                    source: /var/log
+                    target: /logs
+            """);
+    Assertions.assertTrue(streamed.contains("# project comment"), streamed);
+    Assertions.assertTrue(streamed.contains("# http"), streamed);
+    Assertions.assertTrue(streamed.contains("# inline comment"), streamed);
+  }
+
+  @Test
+  void anchorsAreKept() throws Exception {
+    String streamed =
+        assertSameAsLoadDump(
+            """
+            services:
+              web:
+                ports: &ports
+                  - &http "web.port:80"
+                  - &admin {target: 9000, published: "${admin.port}"}
+            """);
+    Assertions.assertTrue(streamed.contains("&ports"), streamed);
+    Assertions.assertTrue(streamed.contains("&http"), streamed);
+    Assertions.assertTrue(streamed.contains("&admin"), streamed);
+  }
+
+  @Test
+  void globIsStreamable() {
+    Assertions.assertTrue(
+        StreamingRewriter.isStreamable("services: {web: {command: 'ls *.txt', ports: [80]}}"));
+  }
+
+  @Test
+  void aliasIsNotStreamable() {
+    Assertions.assertFalse(
+        StreamingRewriter.isStreamable(
+            """
+            x-ports: &ports
+              - "web.port:80"
+            services:
+              web:
+                ports: *ports
+            """));
+  }
+
+  @Test
+  void mergeKeyIsNotStreamable() {
+    Assertions.assertFalse(
+        StreamingRewriter.isStreamable(
+            """
+            services:
+              web:
+                <<: {ports: ["web.port:80"]}
+            """));
+  }
+}
@@ -0,0 +1,94 @@
+package org.honton.chas.compose.maven.plugin.schema;
+
+import java.io.StringReader;
+import java.util.List;
+import org.honton.chas.compose.maven.plugin.yaml.ComposeConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+class SchemaValidatorTest {
+
+  private static final Yaml PARSER = ComposeConstructor.createParser();
+
+  private static List<String> validate(String document) {
+    return SchemaValidator.composeSpec()
+        .validate(PARSER.compose(new StringReader(document)))
+        .stream()
+        .map(Violation::toString)
+        .toList();
+  }
+
+  @Test
+  void validDocument() {
+    Assertions.assertEquals(
+        List.of(),
+        validate(
+            """
+            x-common: &common
+              restart: always
+            services:
+              web:
+                <<: *common
+                image: alpine:${VERSION}
+                privileged: ${PRIVILEGED}
+                ports: ["80:80", 443]
+                depends_on:
+                  db:
+                    condition: service_healthy
+                environment: !reset []
+                healthcheck:
+                  test: [CMD, true]
+                  retries: 3
+              db:
+                image: postgres
+            volumes:
+              data:
+            """));
+  }
+
+  @Test
+  void unknownProperty() {
+    Assertions.assertEquals(
+        List.of("line 3, column 5: services.web.imag is not allowed"),
+        validate("services:\n  web:\n    imag: alpine\n"));
+  }
+
+  @Test
+  void unknownPropertyIsWarning() {
+    List<Violation> violations =
+        SchemaValidator.composeSpec()
+            .validate(
+                PARSER.compose(
+                    new StringReader("services:\n  web:\n    newer: 1\n    ports: '80'\n")));
+    Assertions.assertEquals(
+        List.of(true, false), violations.stream().map(Violation::warning).toList());
+  }
+
+  @Test
+  void wrongType() {
+    Assertions.assertEquals(
+        List.of("line 3, column 12: services.web.ports is string, expected [array]"),
+        validate("services:\n  web:\n    ports: '80'\n"));
+  }
+
+  @Test
+  void enumAndRequired() {
+    Assertions.assertEquals(
+        List.of(
+            "line 5, column 20: services.web.depends_on.db.condition is 'started', expected one of"
+                + " [service_completed_successfully, service_healthy, service_started]",
+            "line 7, column 9: services.web.depends_on.cache is missing required property"
+                + " 'condition'"),
+        validate(
+            """
+            services:
+              web:
+                depends_on:
+                  db:
+                    condition: started
+                  cache:
+                    required: false
+            """));
+  }
+}
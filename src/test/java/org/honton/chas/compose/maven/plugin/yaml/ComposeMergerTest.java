@@ -0,0 +1,137 @@
+package org.honton.chas.compose.maven.plugin.yaml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+class ComposeMergerTest {
+
+  private static final Yaml PARSER = ComposeConstructor.createParser();
+
+  private static Map<String, Object> merge(String... fragments) throws IOException {
+    ComposeMerger merger = new ComposeMerger(Path.of("."));
+    for (String fragment : fragments) {
+      merger.merge("compose.yaml", PARSER.load(fragment));
+    }
+    return merger.getModel("test");
+  }
+
+  private static Object service(Map<String, Object> model, String name, String key) {
+    Map<?, ?> services = (Map<?, ?>) model.get("services");
+    return ((Map<?, ?>) services.get(name)).get(key);
+  }
+
+  @Test
+  void mergeMapping() throws IOException {
+    Map<String, Object> model =
+        merge(
+            "services: {web: {image: a, restart: always}}",
+            "services: {web: {image: b}, db: {image: c}}");
+    Assertions.assertEquals("test", model.get("name"));
+    Assertions.assertEquals("b", service(model, "web", "image"));
+    Assertions.assertEquals("always", service(model, "web", "restart"));
+    Assertions.assertEquals("c", service(model, "db", "image"));
+  }
+
+  @Test
+  void appendSequence() throws IOException {
+    Map<String, Object> model = merge("services: {web: {dns: [a]}}", "services: {web: {dns: [b]}}");
+    Assertions.assertEquals(List.of("a", "b"), service(model, "web", "dns"));
+  }
+
+  @Test
+  void replaceCommand() throws IOException {
+    Map<String, Object> model =
+        merge("services: {web: {command: [a, b]}}", "services: {web: {command: [c]}}");
+    Assertions.assertEquals(List.of("c"), service(model, "web", "command"));
+  }
+
+  @Test
+  void uniqueVolumes() throws IOException {
+    Map<String, Object> model =
+        merge(
+            "services: {web: {volumes: ['./a:/data', './b:/logs']}}",
+            "services: {web: {volumes: ['./c:/data']}}");
+    Assertions.assertEquals(List.of("./c:/data", "./b:/logs"), service(model, "web", "volumes"));
+  }
+
+  @Test
+  void environmentSequenceAndMapping() throws IOException {
+    Map<String, Object> model =
+        merge(
+            "services: {web: {environment: [A=1, B=2]}}", "services: {web: {environment: {B: 3}}}");
+    Assertions.assertEquals(Map.of("A", "1", "B", 3), service(model, "web", "environment"));
+  }
+
+  @Test
+  void resetAndOverride() throws IOException {
+    Map<String, Object> model =
+        merge(
+            "services: {web: {ports: ['80:80'], environment: {A: 1, B: 2}}}",
+            "services: {web: {ports: !reset [], environment: !override {C: 3}}}");
+    Assertions.assertNull(service(model, "web", "ports"));
+    Assertions.assertEquals(Map.of("C", 3), service(model, "web", "environment"));
+  }
+
+  @Test
+  void extendsService() throws IOException {
+    Map<String, Object> model =
+        merge(
+            "services: {base: {image: a, environment: {A: 1}},"
+                + " web: {extends: base, environment: {B: 2}}}");
+    Assertions.assertEquals("a", service(model, "web", "image"));
+    Assertions.assertEquals(Map.of("A", 1, "B", 2), service(model, "web", "environment"));
+    Assertions.assertNull(service(model, "web", "extends"));
+  }
+
+  @Test
+  void uniquePortsAcrossSyntax() throws IOException {
+    Map<String, Object> model =
+        merge(
+            "services: {web: {ports: ['8080:80', '127.0.0.1:9090:90/udp', '[::1]:7070:70']}}",
+            "services: {web: {ports: [{target: 80, published: 8080},"
+                + " {target: 90, published: '9090', host_ip: 127.0.0.1, protocol: udp},"
+                + " {target: 70, published: 7070, host_ip: '::1', protocol: tcp}]}}");
+    Assertions.assertEquals(
+        List.of(
+            Map.of("target", 80, "published", 8080),
+            Map.of("target", 90, "published", "9090", "host_ip", "127.0.0.1", "protocol", "udp"),
+            Map.of("target", 70, "published", 7070, "host_ip", "::1", "protocol", "tcp")),
+        service(model, "web", "ports"));
+  }
+
+  @Test
+  void distinctPortsAreKept() throws IOException {
+    Map<String, Object> model =
+        merge("services: {web: {ports: ['8080:80', 80]}}", "services: {web: {ports: ['80/udp']}}");
+    Assertions.assertEquals(List.of("8080:80", 80, "80/udp"), service(model, "web", "ports"));
+  }
+
+  @Test
+  void extendsWithoutService(@TempDir Path dir) throws IOException {
+    Files.writeString(dir.resolve("compose.yaml"), "services: {web: {extends: {file: base.yaml}}}");
+    ComposeMerger merger = new ComposeMerger(dir);
+    IllegalArgumentException e =
+        Assertions.assertThrows(
+            IllegalArgumentException.class, () -> merger.mergeFile("compose.yaml"));
+    Assertions.assertTrue(e.getMessage().contains("web"), e::getMessage);
+  }
+
+  @Test
+  void extendsEmptyFile(@TempDir Path dir) throws IOException {
+    Files.writeString(dir.resolve("base.yaml"), "");
+    Files.writeString(
+        dir.resolve("compose.yaml"), "services: {web: {extends: {file: base.yaml, service: db}}}");
+    ComposeMerger merger = new ComposeMerger(dir);
+    IllegalArgumentException e =
+        Assertions.assertThrows(
+            IllegalArgumentException.class, () -> merger.mergeFile("compose.yaml"));
+    Assertions.assertTrue(e.getMessage().contains("base.yaml"), e::getMessage);
+  }
+}